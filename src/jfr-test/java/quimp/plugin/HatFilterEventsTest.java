@@ -0,0 +1,83 @@
+package quimp.plugin;
+
+import static com.github.baniuk.ImageJTestSuite.dataaccess.ResourceLoader.loadResource;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.scijava.vecmath.Point2d;
+
+import com.github.baniuk.ImageJTestSuite.dataaccess.DataLoader;
+import com.github.celldynamics.quimp.plugin.ParamList;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Test class for HatFilterEvents.
+ *
+ * @author p.baniukiewicz
+ *
+ */
+public class HatFilterEventsTest {
+
+  /**
+   * Test of JFR events emitted by filter.
+   *
+   * <p>Pre: Outline with protrusions filtered during recording
+   *
+   * <p>Post: One event for run and every step, with outline size, parameters and number of
+   * removed protrusions
+   *
+   * @throws Exception Exception
+   */
+  @SuppressWarnings("serial")
+  @Test
+  public void testEvents() throws Exception {
+    List<Point2d> prot = new DataLoader(
+            loadResource(getClass().getClassLoader(), "testData_prot.dat").toString())
+                    .getListofPoints();
+    HatSnakeFilter_ hf = new HatSnakeFilter_();
+    hf.setPluginConfig(new ParamList() {
+      {
+        put("window", "9");
+        put("pnum", "3");
+        put("alevmin", "0.0");
+        put("alevmax", "1.0");
+      }
+    });
+    hf.attachData(prot);
+    Path file = Files.createTempFile("hatfilter", ".jfr");
+    try (Recording recording = new Recording()) {
+      for (String name : new String[] { "", ".RankTable", ".CandidateSelection",
+          ".OutputAssembly" }) {
+        recording.enable("quimp.plugin.HatFilter" + name);
+      }
+      recording.start();
+      hf.runPlugin();
+      recording.stop();
+      recording.dump(file);
+      Map<String, RecordedEvent> events = new HashMap<>();
+      for (RecordedEvent e : RecordingFile.readAllEvents(file)) {
+        events.put(e.getEventType().getName(), e);
+      }
+      assertEquals(4, events.size());
+      for (RecordedEvent e : events.values()) {
+        assertEquals(prot.size(), e.getInt("size"));
+        assertEquals(9, e.getInt("window"));
+        assertEquals(3, e.getInt("pnum"));
+      }
+      assertEquals(3, events.get("quimp.plugin.HatFilter").getInt("removed"));
+      assertEquals(0, events.get("quimp.plugin.HatFilter.RankTable").getInt("removed"));
+      assertEquals(3, events.get("quimp.plugin.HatFilter.CandidateSelection").getInt("removed"));
+    } finally {
+      Files.delete(file);
+    }
+  }
+}
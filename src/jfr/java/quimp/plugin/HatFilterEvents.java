@@ -0,0 +1,165 @@
+package quimp.plugin;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events of HatFilter.
+ *
+ * <p>One {@link FilterEvent} is emitted for every processed outline and one event for every step
+ * of algorithm ({@link RankTableEvent}, {@link CandidateSelectionEvent},
+ * {@link OutputAssemblyEvent}). All carry size of outline, filter parameters and number of removed
+ * protrusions, duration is recorded by JFR. Events are created only if {@link FilterEvent} is
+ * enabled in recording, so filter running without recording pays for one check per outline. Names
+ * of events in recordings are given by {@link Name} annotations.
+ *
+ * <p>This class is compiled only by JDK providing <tt>jdk.jfr</tt> (profile <tt>jfr</tt>) and can
+ * not be loaded on runtime without JFR. {@link HatFilterEngine} creates {@link Source} by
+ * reflection if both are present, otherwise events are not emitted.
+ *
+ * @author p.baniukiewicz
+ */
+final class HatFilterEvents implements HatFilterRecorder {
+  private final FilterEvent filter;
+  private Base phase; // event of current step
+
+  private HatFilterEvents(FilterEvent filter) {
+    this.filter = filter;
+  }
+
+  /**
+   * Start recording of filter run.
+   *
+   * @param size number of outline vertices
+   * @param window window size
+   * @param pnum number of protrusions to remove
+   * @return recorder of this run or <tt>null</tt> if events are not recorded
+   */
+  static HatFilterEvents begin(int size, int window, int pnum) {
+    FilterEvent filter = new FilterEvent();
+    if (!filter.isEnabled()) {
+      return null;
+    }
+    filter.set(size, window, pnum);
+    filter.begin();
+    return new HatFilterEvents(filter);
+  }
+
+  @Override
+  public void beginRankTable() {
+    beginPhase(new RankTableEvent());
+  }
+
+  @Override
+  public void beginCandidateSelection() {
+    beginPhase(new CandidateSelectionEvent());
+  }
+
+  @Override
+  public void beginOutputAssembly() {
+    beginPhase(new OutputAssemblyEvent());
+  }
+
+  @Override
+  public void endPhase(int removed) {
+    if (phase != null) {
+      phase.removed = removed;
+      phase.commit();
+      phase = null;
+    }
+  }
+
+  @Override
+  public void end(int removed) {
+    endPhase(removed);
+    filter.removed = removed;
+    filter.commit();
+  }
+
+  /**
+   * Factory of JFR recorders, created by {@link HatFilterEngine}.
+   *
+   * @author p.baniukiewicz
+   */
+  static final class Source implements HatFilterRecorder.Factory {
+    @Override
+    public HatFilterRecorder begin(int size, int window, int pnum) {
+      return HatFilterEvents.begin(size, window, pnum);
+    }
+  }
+
+  private void beginPhase(Base event) {
+    event.set(filter.size, filter.window, filter.pnum);
+    event.begin();
+    phase = event;
+  }
+
+  /**
+   * Fields common for all events.
+   *
+   * @author p.baniukiewicz
+   */
+  @Category({ "QuimP", "HatFilter" })
+  abstract static class Base extends Event {
+    @Label("Outline Size")
+    @Description("Number of outline vertices")
+    int size;
+    @Label("Window")
+    int window;
+    @Label("Protrusions")
+    @Description("Number of protrusions to remove")
+    int pnum;
+    @Label("Removed")
+    @Description("Number of removed protrusions")
+    int removed;
+
+    void set(int size, int window, int pnum) {
+      this.size = size;
+      this.window = window;
+      this.pnum = pnum;
+    }
+  }
+
+  /**
+   * Filtering of one outline.
+   *
+   * @author p.baniukiewicz
+   */
+  @Name("quimp.plugin.HatFilter")
+  @Label("Hat Filter")
+  static class FilterEvent extends Base {
+  }
+
+  /**
+   * The first step of algorithm.
+   *
+   * @author p.baniukiewicz
+   */
+  @Name("quimp.plugin.HatFilter.RankTable")
+  @Label("Hat Filter Rank Table")
+  static class RankTableEvent extends Base {
+  }
+
+  /**
+   * The second step of algorithm.
+   *
+   * @author p.baniukiewicz
+   */
+  @Name("quimp.plugin.HatFilter.CandidateSelection")
+  @Label("Hat Filter Candidate Selection")
+  static class CandidateSelectionEvent extends Base {
+  }
+
+  /**
+   * The third step of algorithm.
+   *
+   * @author p.baniukiewicz
+   */
+  @Name("quimp.plugin.HatFilter.OutputAssembly")
+  @Label("Hat Filter Output Assembly")
+  static class OutputAssemblyEvent extends Base {
+  }
+}
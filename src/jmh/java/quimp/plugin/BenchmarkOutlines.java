@@ -0,0 +1,42 @@
+package quimp.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.scijava.vecmath.Point2d;
+
+/**
+ * Synthetic cell outlines used by benchmarks.
+ *
+ * @author p.baniukiewicz
+ */
+class BenchmarkOutlines {
+
+  /**
+   * Generate noisy circular outline with protrusions.
+   *
+   * <p>Distance between consecutive vertices is about 1 pixel, as for outlines produced by BOA.
+   * Every 100th part of outline carries protrusion. Outline depends only on its size.
+   *
+   * @param n number of vertices
+   * @return outline
+   */
+  static List<Point2d> outline(int n) {
+    Random rnd = new Random(n);
+    double radius = n / (2 * Math.PI);
+    int nprot = Math.max(1, n / 100);
+    List<Point2d> p = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      double a = 2 * Math.PI * i / n;
+      double r = radius + 0.3 * rnd.nextGaussian();
+      double d = (double) i * nprot / n;
+      d -= Math.floor(d); // position within part of outline with one protrusion
+      if (d > 0.45 && d < 0.55) {
+        r += 10 * Math.sin((d - 0.45) * 10 * Math.PI);
+      }
+      p.add(new Point2d(r * Math.cos(a), r * Math.sin(a)));
+    }
+    return p;
+  }
+}
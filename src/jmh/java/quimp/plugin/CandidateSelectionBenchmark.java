@@ -0,0 +1,91 @@
+package quimp.plugin;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of components of the second step of HatFilter (candidates search).
+ *
+ * <p>Window positions are ordered by rank with {@link HatFilterEngine#argsortDescending(double[])}
+ * and overlapping of candidates is tested on circular bitmap of vertices covered by accepted
+ * windows. Accepted windows are spread evenly over outline, what is the typical result of
+ * candidates search.
+ *
+ * @author p.baniukiewicz
+ * @see HatFilterBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CandidateSelectionBenchmark {
+
+  /**
+   * Number of outline vertices.
+   */
+  @Param({ "100", "1000", "10000", "50000" })
+  public int size;
+  /**
+   * Window size.
+   */
+  @Param({ "3", "15", "51" })
+  public int window;
+  /**
+   * Number of accepted windows.
+   */
+  @Param({ "1", "3", "6" })
+  public int pnum;
+
+  private double[] circ;
+  private BitSet removed;
+
+  /**
+   * Compute ranks of windows and mark accepted windows.
+   */
+  @Setup
+  public void setUp() {
+    Outline outline = new Outline(BenchmarkOutlines.outline(size));
+    circ = new SlidingCircularity(outline).getCircularities(window);
+    removed = new BitSet(size);
+    for (int i = 0; i < pnum; i++) {
+      HatFilterEngine.occupy(removed, size, i * size / pnum, window);
+    }
+  }
+
+  /**
+   * Ordering of window positions by rank.
+   *
+   * @return positions of windows
+   */
+  @Benchmark
+  public int[] argsort() {
+    return HatFilterEngine.argsortDescending(circ);
+  }
+
+  /**
+   * Test of candidate windows at all positions against accepted windows.
+   *
+   * @param bh sink for results
+   */
+  @Benchmark
+  public void candidates(Blackhole bh) {
+    for (int r = 0; r < size; r++) {
+      bh.consume(HatFilterEngine.isOccupied(removed, size, r, window));
+    }
+  }
+}
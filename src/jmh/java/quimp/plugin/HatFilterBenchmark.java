@@ -0,0 +1,86 @@
+package quimp.plugin;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scijava.vecmath.Point2d;
+
+/**
+ * End to end benchmark of {@link HatFilterEngine#filter(List)}.
+ *
+ * <p>Engine is used instead of {@link HatSnakeFilter_}, which creates user interface and can not
+ * run on headless machines. Every call filters outline from scratch, without data of previous
+ * outline.
+ *
+ * <p>Benchmarks are compiled and run in <tt>jmh</tt> profile:
+ *
+ * <pre>
+ * <code>
+ * mvn -Pjmh test-compile exec:exec
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="HatFilterBenchmark -p size=1000"
+ * </code>
+ * </pre>
+ *
+ * @author p.baniukiewicz
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HatFilterBenchmark {
+
+  /**
+   * Number of outline vertices.
+   */
+  @Param({ "100", "1000", "10000", "50000" })
+  public int size;
+  /**
+   * Window size.
+   */
+  @Param({ "3", "15", "51" })
+  public int window;
+  /**
+   * Number of protrusions to remove.
+   */
+  @Param({ "1", "3", "6" })
+  public int pnum;
+
+  private HatFilterEngine engine;
+  private List<Point2d> points;
+
+  /**
+   * Create outline and configure filter.
+   *
+   * @throws Exception on wrong configuration
+   */
+  @Setup
+  public void setUp() throws Exception {
+    engine = HatFilterEngine.builder().window(window).pnum(pnum).alevmin(0.0).alevmax(1.0)
+            .build();
+    points = BenchmarkOutlines.outline(size);
+  }
+
+  /**
+   * Filter outline.
+   *
+   * @return filtered outline
+   * @throws Exception on filter error
+   */
+  @Benchmark
+  public List<Point2d> filter() throws Exception {
+    return engine.filter(points);
+  }
+}
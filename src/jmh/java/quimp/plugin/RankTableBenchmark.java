@@ -0,0 +1,120 @@
+package quimp.plugin;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of components of the first step of HatFilter (rank table).
+ *
+ * <p>Every benchmark processes all window positions of outline.
+ *
+ * @author p.baniukiewicz
+ * @see HatFilterBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RankTableBenchmark {
+
+  /**
+   * Number of outline vertices.
+   */
+  @Param({ "100", "1000", "10000", "50000" })
+  public int size;
+  /**
+   * Window size.
+   */
+  @Param({ "3", "15", "51" })
+  public int window;
+
+  private Outline outline;
+  private ConvexityIndex index;
+
+  /**
+   * Create outline.
+   */
+  @Setup
+  public void setUp() {
+    outline = new Outline(BenchmarkOutlines.outline(size));
+    index = new ConvexityIndex(outline);
+  }
+
+  /**
+   * Circularities of outline without window.
+   *
+   * @return circularities
+   */
+  @Benchmark
+  public double[] circularity() {
+    return new SlidingCircularity(outline).getCircularities(window);
+  }
+
+  /**
+   * Weightings of windows computed on outline arrays, as in the first step.
+   *
+   * <p>Crossing test of windows is included, one {@link WindowIntersections} slides over outline.
+   *
+   * @param bh sink for results
+   */
+  @Benchmark
+  public void weighting(Blackhole bh) {
+    int n = outline.size();
+    WindowIntersections crossing = new WindowIntersections(outline, window);
+    for (int r = 0; r < n; r++) {
+      bh.consume(HatFilterEngine.getWeighting(outline.x, outline.y, r, window, n,
+              crossing.isCrossing(r)));
+    }
+  }
+
+  /**
+   * Crossing test of windows alone.
+   *
+   * @param bh sink for results
+   */
+  @Benchmark
+  public void crossing(Blackhole bh) {
+    int n = outline.size();
+    WindowIntersections crossing = new WindowIntersections(outline, window);
+    for (int r = 0; r < n; r++) {
+      bh.consume(crossing.isCrossing(r));
+    }
+  }
+
+  /**
+   * Building of index of outline edges.
+   *
+   * @return index
+   */
+  @Benchmark
+  public ConvexityIndex convexityIndex() {
+    return new ConvexityIndex(outline);
+  }
+
+  /**
+   * Convexity test of windows using prebuilt index.
+   *
+   * @param bh sink for results
+   */
+  @Benchmark
+  public void convexity(Blackhole bh) {
+    int n = outline.size();
+    for (int r = 0; r < n; r++) {
+      bh.consume(index.areAllPointsInside(r, window));
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package quimp.plugin;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Read-only view of consecutive elements of list treated as circular.
+ *
+ * <p>View of length <i>len</i> starting at <i>start</i> contains elements
+ * <i>start</i>..<i>start+len-1</i> of backing list, indexes are wrapped modulo size of backing
+ * list. Nothing is copied and backing list is never modified, any attempt to modify view throws
+ * {@link UnsupportedOperationException}. Backing list should support fast random access.
+ *
+ * @author p.baniukiewicz
+ *
+ * @param <T> type of elements
+ */
+class CircularSubList<T> extends AbstractList<T> implements RandomAccess {
+  private final List<? extends T> list;
+  private final int start;
+  private final int len;
+
+  /**
+   * Create view of backing list.
+   *
+   * @param list backing list
+   * @param start index of first element of view in backing list, can be any non-negative value
+   * @param len length of view, not larger than size of backing list
+   */
+  CircularSubList(List<? extends T> list, int start, int len) {
+    if (len < 0 || len > list.size()) {
+      throw new IllegalArgumentException("Wrong length of view: " + len);
+    }
+    this.list = list;
+    this.start = list.isEmpty() ? 0 : start % list.size();
+    this.len = len;
+  }
+
+  @Override
+  public T get(int index) {
+    if (index < 0 || index >= len) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + len);
+    }
+    int i = start + index;
+    if (i >= list.size()) {
+      i -= list.size();
+    }
+    return list.get(i);
+  }
+
+  @Override
+  public int size() {
+    return len;
+  }
+}
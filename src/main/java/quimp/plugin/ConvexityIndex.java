@@ -0,0 +1,166 @@
+package quimp.plugin;
+
+import java.util.List;
+
+/**
+ * Spatial index of outline edges for testing convexity of window points.
+ *
+ * <p>For window at position <i>r</i> HatFilter checks whether all points of window are inside
+ * polygon formed by the outline without these points (see
+ * {@link com.github.celldynamics.quimp.geom.BasicPolygons#areAllPointsInside(List, List)}). That
+ * polygon is the original outline with <i>window+1</i> edges removed and one closing edge added,
+ * so its edges need not to be collected for every window position. Instead edges of the original
+ * outline are distributed once into horizontal slabs of equal height. Ray crossing test for a point
+ * visits only edges from the slab containing the point, skips those removed by window and tests the
+ * closing edge separately. With number of slabs equal to number of vertices, test of one point
+ * costs nearly constant time for typical cell outlines.
+ *
+ * <p>Crossing predicate and its arithmetic are the same as in
+ * {@link com.github.celldynamics.quimp.geom.BasicPolygons#isPointInside(List,
+ * org.scijava.vecmath.Tuple2d)}, therefore results are identical to direct test.
+ *
+ * @author p.baniukiewicz
+ */
+class ConvexityIndex {
+  private final int n; // number of vertices
+  private final double[] x;
+  private final double[] y;
+  private final int nslabs; // number of slabs
+  private final double ymin; // bottom of the first slab
+  private final double scale; // slabs per unit of y
+  // edges in slab s are slabEdges[slabStart[s]]..slabEdges[slabStart[s+1]-1], edge k is between
+  // vertex k and k+1
+  private final int[] slabStart;
+  private final int[] slabEdges;
+
+  /**
+   * Build index for outline.
+   *
+   * @param outline outline to index, not modified
+   */
+  ConvexityIndex(final Outline outline) {
+    n = outline.size();
+    x = outline.x;
+    y = outline.y;
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < n; i++) {
+      min = Math.min(min, y[i]);
+      max = Math.max(max, y[i]);
+    }
+    ymin = min;
+    if (max > min) {
+      nslabs = Math.max(1, n);
+      scale = nslabs / (max - min);
+    } else {
+      nslabs = 1;
+      scale = 0;
+    }
+    // count edges in slabs, horizontal edges never cross the ray and are skipped
+    slabStart = new int[nslabs + 1];
+    for (int k = 0; k < n; k++) {
+      int j = next(k);
+      if (y[k] != y[j]) {
+        for (int s = slab(Math.min(y[k], y[j])); s <= slab(Math.max(y[k], y[j])); s++) {
+          slabStart[s + 1]++;
+        }
+      }
+    }
+    for (int s = 0; s < nslabs; s++) {
+      slabStart[s + 1] += slabStart[s];
+    }
+    slabEdges = new int[slabStart[nslabs]];
+    int[] fill = new int[nslabs];
+    for (int k = 0; k < n; k++) {
+      int j = next(k);
+      if (y[k] != y[j]) {
+        for (int s = slab(Math.min(y[k], y[j])); s <= slab(Math.max(y[k], y[j])); s++) {
+          slabEdges[slabStart[s] + fill[s]++] = k;
+        }
+      }
+    }
+  }
+
+  /**
+   * Number of vertices of indexed outline.
+   *
+   * @return number of vertices
+   */
+  int size() {
+    return n;
+  }
+
+  /**
+   * Check if all points of window are inside outline formed without these points.
+   *
+   * @param r position of window, index of first vertex covered by it
+   * @param window size of window, smaller than number of vertices
+   * @return true if all window points are inside
+   */
+  boolean areAllPointsInside(int r, int window) {
+    for (int i = 0; i < window; i++) {
+      int v = (r + i) % n;
+      if (!isPointInside(x[v], y[v], r, window)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Check if point is inside outline formed without window.
+   *
+   * @param px x coordinate of point
+   * @param py y coordinate of point
+   * @param r position of window, index of first vertex covered by it
+   * @param window size of window, smaller than number of vertices
+   * @return true if point is inside
+   */
+  boolean isPointInside(double px, double py, int r, int window) {
+    int before = (r - 1 + n) % n; // last vertex before window, first removed edge
+    int after = (r + window) % n; // first vertex after window
+    // closing edge goes from last vertex before window to first vertex after it
+    boolean result = crosses(before, after, px, py);
+    int s = slab(py);
+    for (int e = slabStart[s]; e < slabStart[s + 1]; e++) {
+      int k = slabEdges[e];
+      // edges before..before+window are removed together with window
+      int offset = k - before;
+      if (offset < 0) {
+        offset += n;
+      }
+      if (offset > window && crosses(k, next(k), px, py)) {
+        result = !result;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Ray crossing test for edge from vertex a to vertex b.
+   *
+   * <p>Expression follows BasicPolygons, where b is current and a previous vertex of polygon.
+   */
+  private boolean crosses(int a, int b, double px, double py) {
+    return (y[b] > py) != (y[a] > py)
+            && (px < (x[a] - x[b]) * (py - y[b]) / (y[a] - y[b]) + x[b]);
+  }
+
+  /**
+   * Slab index for y coordinate, clamped to valid range.
+   */
+  private int slab(double py) {
+    int s = (int) ((py - ymin) * scale);
+    if (s < 0) {
+      return 0;
+    }
+    if (s >= nslabs) {
+      return nslabs - 1;
+    }
+    return s;
+  }
+
+  private int next(int k) {
+    return k + 1 == n ? 0 : k + 1;
+  }
+}
@@ -0,0 +1,120 @@
+package quimp.plugin;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Convexity flags for all positions of window of given size.
+ *
+ * <p>Flag for position <i>r</i> is true if all points of window placed at <i>r</i> are inside
+ * outline formed without these points (window is concave, see
+ * {@link ConvexityIndex#areAllPointsInside(int, int)}). Flags can be computed for all positions at
+ * once ({@link #computeAll()}) or evaluated on first request and memorised ({@link #get(int)}).
+ * Candidate selection in HatFilter usually stops after few top ranked windows, so most of tests
+ * are never needed.
+ *
+ * <p>State of every position is kept in separate array element, therefore disjoint ranges of
+ * positions can be evaluated concurrently by {@link #compute(int, int)}.
+ *
+ * @author p.baniukiewicz
+ */
+class ConvexityTable {
+  static final Logger LOGGER = LoggerFactory.getLogger(ConvexityTable.class.getName());
+  private static final byte UNKNOWN = 0; // position not evaluated yet
+  private static final byte OUTSIDE = 1; // at least one window point outside
+  private static final byte INSIDE = 2; // all window points inside
+  private final ConvexityIndex index;
+  private final int window;
+  private final byte[] state; // state of each position
+
+  /**
+   * Create empty table.
+   *
+   * @param index index of outline edges
+   * @param window size of window
+   */
+  ConvexityTable(ConvexityIndex index, int window) {
+    this.index = index;
+    this.window = window;
+    state = new byte[index.size()];
+  }
+
+  /**
+   * Evaluate flags for all window positions.
+   */
+  void computeAll() {
+    compute(0, state.length);
+  }
+
+  /**
+   * Evaluate flags for range of window positions.
+   *
+   * @param lo first position, inclusive
+   * @param hi last position, exclusive
+   */
+  void compute(int lo, int hi) {
+    for (int r = lo; r < hi; r++) {
+      if (state[r] == UNKNOWN) {
+        evaluate(r);
+      }
+    }
+  }
+
+  /**
+   * Get flag for window position, evaluate it if not known yet.
+   *
+   * @param r position of window
+   * @return true if all window points are inside outline without them
+   */
+  boolean get(int r) {
+    if (state[r] == UNKNOWN) {
+      evaluate(r);
+    }
+    return state[r] == INSIDE;
+  }
+
+  /**
+   * Check if flag for window position is already evaluated.
+   *
+   * @param r position of window
+   * @return true if flag is known
+   */
+  boolean isKnown(int r) {
+    return state[r] != UNKNOWN;
+  }
+
+  /**
+   * Count window positions with evaluated flags.
+   *
+   * @return number of positions
+   */
+  int countKnown() {
+    int count = 0;
+    for (byte b : state) {
+      if (b != UNKNOWN) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Copy state of position from other table.
+   *
+   * <p>Caller is responsible for checking that flag of window at this position is the same for
+   * both outlines.
+   *
+   * @param other table to copy from, built for outline of the same size and the same window
+   * @param r position of window
+   */
+  void reuse(ConvexityTable other, int r) {
+    state[r] = other.state[r];
+  }
+
+  private void evaluate(int r) {
+    state[r] = index.areAllPointsInside(r, window) ? INSIDE : OUTSIDE;
+    if (LOGGER.isTraceEnabled()) {
+      LOGGER.trace("con: " + r + " " + (state[r] == INSIDE));
+    }
+  }
+}
@@ -0,0 +1,176 @@
+package quimp.plugin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.scijava.vecmath.Point2d;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.celldynamics.quimp.plugin.ParamList;
+import com.github.celldynamics.quimp.plugin.QuimpPluginException;
+
+/**
+ * Filter many outlines, e.g. all cells of one frame, with one set of parameters.
+ *
+ * <p>Outlines are processed concurrently on {@link ForkJoinPool}. Results are returned in order of
+ * input outlines. Failure of one outline does not stop processing of others, error is reported in
+ * {@link Result} related to this outline instead. No user interface is created.
+ *
+ * <p>Example:
+ *
+ * <pre>
+ * <code>
+ * HatFilterBatch batch = new HatFilterBatch(hatSnakeFilter.getPluginConfig());
+ * List&lt;HatFilterBatch.Result&gt; res = batch.filter(outlines);
+ * </code>
+ * </pre>
+ *
+ * @author p.baniukiewicz
+ */
+public class HatFilterBatch {
+  static final Logger LOGGER = LoggerFactory.getLogger(HatFilterBatch.class.getName());
+  private volatile HatFilterEngine engine; // replaced when metrics are attached
+  private final ForkJoinPool pool;
+
+  /**
+   * Create batch processor working on common pool.
+   *
+   * @param par filter parameters, the same as accepted by
+   *        {@link HatSnakeFilter_#setPluginConfig(ParamList)}
+   * @throws QuimpPluginException on wrong parameters list or wrong parameter conversion
+   */
+  public HatFilterBatch(final ParamList par) throws QuimpPluginException {
+    this(par, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Create batch processor.
+   *
+   * @param par filter parameters, the same as accepted by
+   *        {@link HatSnakeFilter_#setPluginConfig(ParamList)}
+   * @param pool pool to run filter on. It is also used for parallel processing of large outlines.
+   * @throws QuimpPluginException on wrong parameters list or wrong parameter conversion
+   */
+  public HatFilterBatch(final ParamList par, ForkJoinPool pool) throws QuimpPluginException {
+    engine = HatFilterEngine.builder().config(par).forkJoinPool(pool).build();
+    this.pool = pool;
+  }
+
+  /**
+   * Attach object collecting statistics of filtering.
+   *
+   * @param metrics object to add statistics of every outline to, <tt>null</tt> to stop
+   *        collecting them
+   * @see HatSnakeFilter_#setMetrics(HatFilterMetrics)
+   */
+  public void setMetrics(HatFilterMetrics metrics) {
+    engine = engine.toBuilder().metrics(metrics).build();
+  }
+
+  /**
+   * Filter outlines.
+   *
+   * @param outlines outlines to filter, not modified
+   * @return results in order of input outlines
+   */
+  public List<Result> filter(Collection<? extends List<Point2d>> outlines) {
+    HatFilterEngine e = engine; // the same engine for all outlines of this call
+    List<ForkJoinTask<Result>> tasks = new ArrayList<>(outlines.size());
+    for (List<Point2d> outline : outlines) {
+      tasks.add(pool.submit(() -> filterOne(e, outline)));
+    }
+    List<Result> ret = new ArrayList<>(tasks.size());
+    for (ForkJoinTask<Result> task : tasks) {
+      ret.add(task.join());
+    }
+    return ret;
+  }
+
+  /**
+   * Filter one outline catching all errors.
+   *
+   * @param engine configured filter
+   * @param outline outline to filter
+   * @return result of filtering
+   */
+  static Result filterOne(HatFilterEngine engine, List<Point2d> outline) {
+    return filterOne(engine, outline, null);
+  }
+
+  /**
+   * Filter one outline catching all errors.
+   *
+   * @param engine configured filter
+   * @param outline outline to filter
+   * @param caches data of previous outlines of cells, can be <tt>null</tt>
+   * @return result of filtering
+   * @see HatFilterEngine#filter(List, Outline, java.util.function.Consumer, RankCache)
+   */
+  static Result filterOne(HatFilterEngine engine, List<Point2d> outline, RankCacheSet caches) {
+    if (outline == null) {
+      return new Result(null, new QuimpPluginException("No data attached"));
+    }
+    try {
+      Outline primitive = null;
+      RankCache cache = null;
+      if (caches != null) {
+        primitive = new Outline(outline);
+        cache = caches.select(primitive, engine.getWindow(), engine.isCrossingDefective());
+      }
+      return new Result(engine.filter(outline, primitive, null, cache), null);
+    } catch (QuimpPluginException e) {
+      LOGGER.debug("Outline not filtered: " + e.getMessage());
+      return new Result(null, e);
+    } catch (RuntimeException e) {
+      LOGGER.debug("Outline not filtered: " + e.toString());
+      return new Result(null, new QuimpPluginException(e.toString(), e));
+    }
+  }
+
+  /**
+   * Result of filtering of one outline.
+   *
+   * @author p.baniukiewicz
+   *
+   */
+  public static class Result {
+    private final List<Point2d> outline;
+    private final QuimpPluginException error;
+
+    Result(List<Point2d> outline, QuimpPluginException error) {
+      this.outline = outline;
+      this.error = error;
+    }
+
+    /**
+     * Check if outline was filtered.
+     *
+     * @return true if filtering succeeded
+     */
+    public boolean isSuccess() {
+      return error == null;
+    }
+
+    /**
+     * Get filtered outline.
+     *
+     * @return filtered outline or <tt>null</tt> if filtering failed
+     */
+    public List<Point2d> getOutline() {
+      return outline;
+    }
+
+    /**
+     * Get error that stopped filtering of outline.
+     *
+     * @return error or <tt>null</tt> if filtering succeeded
+     */
+    public QuimpPluginException getError() {
+      return error;
+    }
+  }
+}
@@ -0,0 +1,446 @@
+package quimp.plugin;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import org.scijava.vecmath.Point2d;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.celldynamics.quimp.plugin.QuimpPluginException;
+
+/**
+ * Command line batch runner of HatFilter.
+ *
+ * <p>Filters all outline files found in directory tree and writes results to output directory
+ * keeping relative paths and names of files. No user interface is created, so runner can be used
+ * on headless nodes. Files are read, filtered and written by pool of workers. Directory is listed
+ * lazily and number of files processed at once is limited, so memory used does not depend on
+ * number of files. Formats of text files are described in {@link OutlineIo}. Files with extension
+ * {@value #ARCHIVE_EXTENSION} are binary containers of many outlines ({@link OutlineArchive}),
+ * they are memory-mapped and split into ranges of {@value #ARCHIVE_RANGE} outlines filtered by
+ * workers like separate files, so number of threads used is always limited by <tt>--threads</tt>.
+ * Every outline is written to space reserved for it in output file. Outline of archive that can not
+ * be filtered is reported and written unchanged, so indexes of outlines in input and output are the
+ * same.
+ *
+ * <p>Usage:
+ *
+ * <pre>
+ * <code>
+ * java -cp HatSnakeFilter.jar:QuimP.jar quimp.plugin.HatFilterCli [options] input output
+ *   --window N     window size (default 15)
+ *   --pnum N       number of protrusions (default 1)
+ *   --alevmin D    minimal acceptance level (default 0)
+ *   --alevmax D    maximal acceptance level (default 1)
+ *   --threads N    number of workers (default number of processors)
+ *   --glob GLOB    pattern of file names (default *.{csv,dat,txt,hato})
+ *   --columns X,Y  columns of coordinates in multi-column files (default 0,1)
+ *   --report S     interval of progress reports in seconds (default 10)
+ * </code>
+ * </pre>
+ *
+ * <p>Exit code is 0 if all files have been filtered, 1 if any file failed and 2 on wrong
+ * arguments.
+ *
+ * @author p.baniukiewicz
+ */
+public class HatFilterCli {
+  static final Logger LOGGER = LoggerFactory.getLogger(HatFilterCli.class.getName());
+  /**
+   * Default pattern of file names.
+   */
+  static final String DEFAULT_GLOB = "*.{csv,dat,txt,hato}";
+  /**
+   * Extension of binary files.
+   */
+  static final String ARCHIVE_EXTENSION = ".hato";
+  /**
+   * Number of outlines of binary file filtered by one task.
+   */
+  static final int ARCHIVE_RANGE = 64;
+
+  private int window = 15;
+  private int pnum = 1;
+  private double alevmin = 0;
+  private double alevmax = 1;
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private String glob = DEFAULT_GLOB;
+  private int xcol = 0;
+  private int ycol = 1;
+  private long reportInterval = 10; // in seconds
+  private Path input;
+  private Path output;
+
+  private final PrintStream out;
+  private final PrintStream err;
+  private final LongAdder files = new LongAdder(); // filtered files
+  private final LongAdder errors = new LongAdder(); // failed files and outlines of archives
+  private final LongAdder points = new LongAdder(); // vertices of filtered outlines
+  private final AtomicLong lastReport = new AtomicLong(); // time of last report in ns
+  private long start; // start time in ns
+
+  private HatFilterCli(PrintStream out, PrintStream err) {
+    this.out = out;
+    this.err = err;
+  }
+
+  /**
+   * Run batch processing.
+   *
+   * @param args command line arguments
+   */
+  public static void main(String[] args) {
+    System.exit(run(args, System.out, System.err));
+  }
+
+  /**
+   * Run batch processing.
+   *
+   * @param args command line arguments
+   * @param out receiver of progress reports
+   * @param err receiver of errors
+   * @return exit code
+   */
+  static int run(String[] args, PrintStream out, PrintStream err) {
+    HatFilterCli cli = new HatFilterCli(out, err);
+    try {
+      cli.parse(args);
+    } catch (IllegalArgumentException e) {
+      err.println(e.getMessage());
+      err.println("Usage: HatFilterCli [--window N] [--pnum N] [--alevmin D] [--alevmax D] "
+              + "[--threads N] [--glob GLOB] [--columns X,Y] [--report S] input output");
+      return 2;
+    }
+    try {
+      return cli.process();
+    } catch (IOException e) {
+      err.println("Can not list " + cli.input + ": " + e.getMessage());
+      return 1;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      err.println("Interrupted");
+      return 1;
+    }
+  }
+
+  /**
+   * Parse command line.
+   *
+   * @param args arguments
+   * @throws IllegalArgumentException on wrong arguments
+   */
+  private void parse(String[] args) {
+    List<String> positional = new ArrayList<>();
+    try {
+      for (int i = 0; i < args.length; i++) {
+        String arg = args[i];
+        if (!arg.startsWith("--")) {
+          positional.add(arg);
+          continue;
+        }
+        if (i + 1 >= args.length) {
+          throw new IllegalArgumentException("Missing value of " + arg);
+        }
+        String value = args[++i];
+        switch (arg) {
+          case "--window":
+            window = Integer.parseInt(value);
+            break;
+          case "--pnum":
+            pnum = Integer.parseInt(value);
+            break;
+          case "--alevmin":
+            alevmin = Double.parseDouble(value);
+            break;
+          case "--alevmax":
+            alevmax = Double.parseDouble(value);
+            break;
+          case "--threads":
+            threads = Integer.parseInt(value);
+            break;
+          case "--glob":
+            glob = value;
+            break;
+          case "--columns":
+            String[] cols = value.split(",");
+            if (cols.length != 2) {
+              throw new IllegalArgumentException("Two columns expected: " + value);
+            }
+            xcol = Integer.parseInt(cols[0].trim());
+            ycol = Integer.parseInt(cols[1].trim());
+            break;
+          case "--report":
+            reportInterval = Long.parseLong(value);
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown option " + arg);
+        }
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Wrong number: " + e.getMessage());
+    }
+    if (positional.size() != 2) {
+      throw new IllegalArgumentException("Input and output directories expected");
+    }
+    if (threads < 1 || xcol < 0 || ycol < 0) {
+      throw new IllegalArgumentException("Number of threads and columns must be positive");
+    }
+    input = Paths.get(positional.get(0));
+    output = Paths.get(positional.get(1));
+    if (!Files.isDirectory(input)) {
+      throw new IllegalArgumentException("Input directory does not exist: " + input);
+    }
+  }
+
+  /**
+   * Filter all matching files.
+   *
+   * @return exit code
+   * @throws IOException if input directory can not be listed
+   * @throws InterruptedException if interrupted while waiting for workers
+   */
+  private int process() throws IOException, InterruptedException {
+    HatFilterEngine engine = HatFilterEngine.builder().window(window).pnum(pnum).alevmin(alevmin)
+            .alevmax(alevmax).forkJoinPool(null) // outlines are processed in parallel instead
+            .build();
+    PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+    Path skip = output.toAbsolutePath().normalize(); // output can be inside input
+    ExecutorService workers = Executors.newFixedThreadPool(threads);
+    // limit of files read but not written yet
+    Semaphore inFlight = new Semaphore(2 * threads);
+    start = System.nanoTime();
+    lastReport.set(start);
+    try (Stream<Path> tree = Files.walk(input)) {
+      Iterator<Path> it = tree.filter(p -> matcher.matches(p.getFileName()))
+              .filter(p -> !p.toAbsolutePath().normalize().startsWith(skip))
+              .filter(Files::isRegularFile).iterator();
+      while (it.hasNext()) {
+        Path file = it.next();
+        if (file.getFileName().toString().endsWith(ARCHIVE_EXTENSION)) {
+          submitArchive(engine, file, workers, inFlight);
+          continue;
+        }
+        inFlight.acquire();
+        workers.execute(() -> {
+          try {
+            filter(engine, file);
+          } finally {
+            inFlight.release();
+          }
+        });
+      }
+    } finally {
+      workers.shutdown();
+      workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+    out.println("Finished: " + progress());
+    return errors.sum() == 0 ? 0 : 1;
+  }
+
+  /**
+   * Filter one text file.
+   *
+   * @param engine filter
+   * @param file input file
+   */
+  private void filter(HatFilterEngine engine, Path file) {
+    try {
+      Path target = output.resolve(input.relativize(file).toString());
+      OutlineIo.Data data = OutlineIo.read(file, xcol, ycol);
+      List<Point2d> res = engine.filter(data.points);
+      OutlineIo.write(target, res, data.layout);
+      points.add(data.points.size());
+      files.increment();
+    } catch (Exception e) {
+      fail(file, e);
+    }
+    report();
+  }
+
+  /**
+   * Submit filtering of all outlines of binary file.
+   *
+   * <p>Ranges of outlines are submitted to workers as they become free, files are closed by range
+   * finished last.
+   *
+   * @param engine filter
+   * @param file input file
+   * @param workers pool of workers
+   * @param inFlight limit of tasks submitted but not finished yet
+   * @throws InterruptedException if interrupted while waiting for free worker
+   */
+  private void submitArchive(HatFilterEngine engine, Path file, ExecutorService workers,
+          Semaphore inFlight) throws InterruptedException {
+    ArchiveJob job;
+    try {
+      job = new ArchiveJob(file, output.resolve(input.relativize(file).toString()));
+    } catch (Exception e) {
+      fail(file, e);
+      report();
+      return;
+    }
+    int size = job.archive.size();
+    if (size == 0) {
+      job.finish();
+      return;
+    }
+    for (int from = 0; from < size; from += ARCHIVE_RANGE) {
+      int lo = from;
+      int hi = Math.min(from + ARCHIVE_RANGE, size);
+      inFlight.acquire();
+      workers.execute(() -> {
+        try {
+          job.filter(engine, lo, hi);
+        } finally {
+          inFlight.release();
+        }
+      });
+    }
+  }
+
+  /**
+   * Report failed file.
+   *
+   * @param file input file
+   * @param e reason
+   */
+  private void fail(Path file, Exception e) {
+    errors.increment();
+    err.println(file + ": " + e.getMessage());
+    LOGGER.debug(e.getMessage(), e);
+  }
+
+  /**
+   * Print progress if report interval has passed.
+   */
+  private void report() {
+    long now = System.nanoTime();
+    long last = lastReport.get();
+    if (now - last >= TimeUnit.SECONDS.toNanos(reportInterval)
+            && lastReport.compareAndSet(last, now)) {
+      out.println(progress());
+    }
+  }
+
+  /**
+   * Filtering of binary file split into ranges of outlines.
+   *
+   * @author p.baniukiewicz
+   */
+  private class ArchiveJob {
+    private final Path file;
+    private final OutlineArchive archive;
+    private final OutlineArchiveWriter writer;
+    private final AtomicInteger remaining; // ranges not finished yet
+    private final AtomicBoolean failed = new AtomicBoolean(); // set on read or write error
+
+    /**
+     * Open input and create output with space reserved for every outline.
+     *
+     * @param file input file
+     * @param target output file
+     * @throws IOException on read or write error
+     */
+    ArchiveJob(Path file, Path target) throws IOException {
+      this.file = file;
+      Files.createDirectories(target.toAbsolutePath().getParent());
+      archive = new OutlineArchive(file);
+      try {
+        int[] reserved = new int[archive.size()]; // filter never adds vertices
+        for (int i = 0; i < reserved.length; i++) {
+          reserved[i] = archive.getPoints(i);
+        }
+        writer = new OutlineArchiveWriter(target, reserved, archive.getPrecision());
+      } catch (IOException | RuntimeException e) {
+        archive.close();
+        throw e;
+      }
+      remaining = new AtomicInteger((archive.size() + ARCHIVE_RANGE - 1) / ARCHIVE_RANGE);
+    }
+
+    /**
+     * Filter range of outlines and write them to their slots.
+     *
+     * @param engine filter
+     * @param from index of first outline
+     * @param to index after last outline
+     */
+    void filter(HatFilterEngine engine, int from, int to) {
+      try {
+        for (int i = from; i < to && !failed.get(); i++) {
+          Outline outline = archive.getOutline(i);
+          Outline res;
+          try {
+            res = engine.filter(outline);
+          } catch (QuimpPluginException | RuntimeException e) {
+            errors.increment();
+            err.println(file + "[" + i + "]: " + e.getMessage());
+            res = outline;
+          }
+          points.add(outline.size());
+          writer.write(i, res);
+        }
+      } catch (IOException | RuntimeException e) {
+        if (failed.compareAndSet(false, true)) {
+          fail(file, e);
+        }
+      } finally {
+        if (remaining.decrementAndGet() <= 0) {
+          finish();
+        }
+      }
+    }
+
+    /**
+     * Close files after all ranges have finished.
+     */
+    void finish() {
+      try {
+        try {
+          writer.close();
+        } finally {
+          archive.close();
+        }
+      } catch (IOException e) {
+        if (failed.compareAndSet(false, true)) {
+          fail(file, e);
+        }
+      }
+      if (!failed.get()) {
+        files.increment();
+      }
+      report();
+    }
+  }
+
+  /**
+   * Format statistics of processing.
+   *
+   * @return number of processed files and throughput
+   */
+  private String progress() {
+    double time = (System.nanoTime() - start) / 1e9;
+    long f = files.sum();
+    long p = points.sum();
+    return String.format("%d files (%d errors), %d points in %.1f s, %.1f files/s, %.0f points/s",
+            f, errors.sum(), p, time, f / time, p / time);
+  }
+}
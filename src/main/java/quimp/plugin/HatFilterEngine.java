@@ -0,0 +1,1149 @@
+package quimp.plugin;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.scijava.vecmath.Point2d;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.celldynamics.quimp.plugin.ParamList;
+import com.github.celldynamics.quimp.plugin.QuimpPluginException;
+
+/**
+ * Core of HatFilter, independent of user interface.
+ * 
+ * <p>Engine holds parameters of filter and processes outlines passed to
+ * {@link #filter(List, Consumer)}. Description of algorithm and its parameters is given in
+ * {@link HatSnakeFilter_}. Parameters are set when engine is created (see {@link Builder}) and
+ * can not be changed later. Outlines are processed using local data only, therefore one engine
+ * can be shared by many threads and filter many outlines concurrently without synchronisation.
+ * 
+ * <p>Example:
+ * 
+ * <pre>
+ * <code>
+ * HatFilterEngine engine = HatFilterEngine.builder().window(23).pnum(2).build();
+ * List&lt;Point2d&gt; filtered = engine.filter(outline);
+ * </code>
+ * </pre>
+ * 
+ * @author p.baniukiewicz
+ */
+public final class HatFilterEngine {
+  static final Logger LOGGER = LoggerFactory.getLogger(HatFilterEngine.class.getName());
+  /**
+   * Default minimal number of outline points for which rank table is computed in parallel.
+   */
+  static final int DEFAULT_PARALLEL_THRESHOLD = 2048;
+  /**
+   * Minimal number of window positions processed by one parallel task.
+   */
+  static final int MIN_PARALLEL_LEAF = 128;
+  /**
+   * Source of Java Flight Recorder events, <tt>null</tt> if events can not be emitted.
+   */
+  static final HatFilterRecorder.Factory RECORDERS = loadRecorders();
+
+  private final int window; // filter's window size
+  private final int pnum; // how many protrusions to remove
+  private final double alevmin; // minimal acceptance level
+  private final double alevmax; // maximal acceptance level
+  private final boolean lazyConvexity; // evaluate convexity only for windows visited in Step 2
+  private final boolean crossingDefective; // windows with crossing edges are defective
+  private final ForkJoinPool pool; // pool used for computing rank table, null for serial
+  private final int parallelThreshold; // minimal number of outline points for parallel computation
+  private final HatFilterMetrics metrics; // receiver of statistics, null if not collected
+
+  /**
+   * Create engine for given parameters and default processing options.
+   * 
+   * <p>Parameters are validated when outline is processed.
+   * 
+   * @param window size of window
+   * @param pnum number of protrusions to remove
+   * @param alevmin minimal acceptance level
+   * @param alevmax maximal acceptance level
+   */
+  public HatFilterEngine(int window, int pnum, double alevmin, double alevmax) {
+    this(builder().window(window).pnum(pnum).alevmin(alevmin).alevmax(alevmax));
+  }
+
+  private HatFilterEngine(Builder b) {
+    window = b.window;
+    pnum = b.pnum;
+    alevmin = b.alevmin;
+    alevmax = b.alevmax;
+    lazyConvexity = b.lazyConvexity;
+    crossingDefective = b.crossingDefective;
+    pool = b.pool;
+    parallelThreshold = b.parallelThreshold;
+    metrics = b.metrics;
+  }
+
+  /**
+   * Create engine from configuration of plugin.
+   * 
+   * @param par filter parameters, the same as accepted by
+   *        {@link HatSnakeFilter_#setPluginConfig(ParamList)}
+   * @return engine with default processing options
+   * @throws QuimpPluginException on wrong parameters list or wrong parameter conversion
+   */
+  public static HatFilterEngine fromConfig(final ParamList par) throws QuimpPluginException {
+    return builder().config(par).build();
+  }
+
+  /**
+   * Create builder with default parameters of plugin.
+   * 
+   * @return new builder
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Create builder initialised with parameters of this engine.
+   * 
+   * @return new builder
+   */
+  public Builder toBuilder() {
+    Builder b = new Builder();
+    b.window = window;
+    b.pnum = pnum;
+    b.alevmin = alevmin;
+    b.alevmax = alevmax;
+    b.lazyConvexity = lazyConvexity;
+    b.crossingDefective = crossingDefective;
+    b.pool = pool;
+    b.parallelThreshold = parallelThreshold;
+    b.metrics = metrics;
+    return b;
+  }
+
+  /**
+   * Get size of window.
+   * 
+   * @return window size
+   */
+  public int getWindow() {
+    return window;
+  }
+
+  /**
+   * Get number of protrusions to remove.
+   * 
+   * @return number of protrusions
+   */
+  public int getPnum() {
+    return pnum;
+  }
+
+  /**
+   * Get minimal acceptance level.
+   * 
+   * @return acceptance level
+   */
+  public double getAlevmin() {
+    return alevmin;
+  }
+
+  /**
+   * Get maximal acceptance level.
+   * 
+   * @return acceptance level
+   */
+  public double getAlevmax() {
+    return alevmax;
+  }
+
+  /**
+   * Check if windows with crossing edges are defective.
+   *
+   * @return true if crossing windows use mean point for weighting
+   */
+  public boolean isCrossingDefective() {
+    return crossingDefective;
+  }
+
+  /**
+   * Remove protrusions from outline.
+   * 
+   * @param points outline to process, not modified
+   * @return Processed input list, size of output list may be different than input. Empty output
+   *         is also allowed.
+   * @throws QuimpPluginException on wrong parameters
+   * @see #filter(List, Consumer)
+   */
+  public List<Point2d> filter(List<Point2d> points) throws QuimpPluginException {
+    return filter(points, null);
+  }
+
+  /**
+   * Remove protrusions from outline.
+   * 
+   * @param points outline to process, not modified
+   * @param log receiver of messages for user, can be <tt>null</tt>
+   * @return Processed input list, size of output list may be different than input. Empty output
+   *         is also allowed.
+   * @throws QuimpPluginException on wrong parameters
+   * @see #filter(List, Consumer, RankCache)
+   */
+  public List<Point2d> filter(List<Point2d> points, Consumer<String> log)
+          throws QuimpPluginException {
+    return filter(points, log, null);
+  }
+
+  /**
+   * Remove protrusions from outline reusing rank table data of previous outline of the same cell.
+   * 
+   * @param points outline to process, not modified
+   * @param log receiver of messages for user, can be <tt>null</tt>
+   * @param cache data of previous outline, updated for current one. Can be <tt>null</tt>, then
+   *        rank table is always computed from scratch.
+   * @return Processed input list, size of output list may be different than input. Empty output
+   *         is also allowed.
+   * @throws QuimpPluginException on wrong parameters
+   * @throws CancellationException if calling thread has been interrupted
+   * @see #rank(List, RankCache)
+   * @see #select(RankTable, Consumer)
+   */
+  List<Point2d> filter(List<Point2d> points, Consumer<String> log, RankCache cache)
+          throws QuimpPluginException {
+    return filter(points, null, log, cache);
+  }
+
+  /**
+   * Remove protrusions from outline given also in primitive arrays.
+   * 
+   * <p>Used by callers that already converted outline, e.g. for selecting cache of the same cell
+   * with {@link RankCacheSet#select(Outline, int, boolean)}. Cache prepared for <tt>primitive</tt>
+   * is not compared with it again.
+   * 
+   * @param points outline to process, not modified
+   * @param primitive the same outline as <tt>points</tt> stored in arrays, not modified.
+   *        <tt>null</tt> to copy it from <tt>points</tt>
+   * @param log receiver of messages for user, can be <tt>null</tt>
+   * @param cache data of previous outline, updated for current one. Can be <tt>null</tt>
+   * @return Processed input list, size of output list may be different than input. Empty output
+   *         is also allowed.
+   * @throws QuimpPluginException on wrong parameters
+   * @throws CancellationException if calling thread has been interrupted
+   */
+  List<Point2d> filter(List<Point2d> points, Outline primitive, Consumer<String> log,
+          RankCache cache) throws QuimpPluginException {
+    // check input conditions
+    validateWindow(points.size());
+    validateSelection();
+    RankTable table = computeRankTable(points, primitive, cache, null);
+    checkInterrupted();
+    return selectCandidates(table, log, table.points, table.outline::toList);
+  }
+
+  /**
+   * Remove protrusions from outline stored in primitive arrays.
+   * 
+   * <p>Used for bulk processing (see {@link OutlineArchive}), input and output are not converted to
+   * lists of points.
+   * 
+   * @param outline outline to process, not modified
+   * @return outline without removed vertices, input object if nothing has been removed
+   * @throws QuimpPluginException on wrong parameters
+   * @throws CancellationException if calling thread has been interrupted
+   */
+  Outline filter(Outline outline) throws QuimpPluginException {
+    return filter(outline, null);
+  }
+
+  /**
+   * Remove protrusions from outline considering only selected window positions.
+   * 
+   * <p>Rank of every selected position is computed exactly as by {@link #filter(List)}, other
+   * positions are never candidates and their weightings are not computed. Ranks are normalised to
+   * maximum of selected positions. Used by {@link MultiResolutionHatFilter}. Runs with selected
+   * positions are counted by {@link HatFilterMetrics#getApproximateRuns()}.
+   * 
+   * @param outline outline to process, not modified
+   * @param positions window positions to consider, <tt>null</tt> or empty for all
+   * @return outline without removed vertices, input object if nothing has been removed
+   * @throws QuimpPluginException on wrong parameters
+   * @throws CancellationException if calling thread has been interrupted
+   */
+  Outline filter(Outline outline, BitSet positions) throws QuimpPluginException {
+    validateWindow(outline.size());
+    validateSelection();
+    boolean partial = positions != null && !positions.isEmpty();
+    RankTable table =
+            computeRankTable(outline.asList(), outline, null, partial ? positions : null);
+    checkInterrupted();
+    Outline ret = selectCandidates(table, null, outline, outline::remove);
+    if (partial && metrics != null) {
+      metrics.recordApproximate();
+    }
+    return ret;
+  }
+
+  /**
+   * Compute rank table of outline (Step 1).
+   * 
+   * <p>Table depends only on outline and window size. It can be used for selecting protrusions by
+   * engines with the same window and any other parameters.
+   * 
+   * @param points outline to process, not modified
+   * @param cache data of previous outline, updated for current one. Can be <tt>null</tt>
+   * @return rank table
+   * @throws QuimpPluginException on wrong window size
+   * @throws CancellationException if calling thread has been interrupted
+   * @see #select(RankTable, Consumer)
+   */
+  RankTable rank(List<Point2d> points, RankCache cache) throws QuimpPluginException {
+    validateWindow(points.size());
+    return computeRankTable(points, null, cache, null);
+  }
+
+  /**
+   * Remove protrusions from outline using its rank table (Steps 2 and 3).
+   * 
+   * <p>Only selection of candidates and forming output are performed, therefore changing of
+   * <i>pnum</i>, <i>alevmin</i> or <i>alevmax</i> does not require computing rank table again.
+   * 
+   * @param table rank table computed by engine with the same window
+   * @param log receiver of messages for user, can be <tt>null</tt>
+   * @return Processed outline of table, the same as returned by {@link #filter(List, Consumer)}
+   * @throws QuimpPluginException on wrong parameters
+   * @throws CancellationException if calling thread has been interrupted
+   * @see #rank(List, RankCache)
+   */
+  List<Point2d> select(RankTable table, Consumer<String> log) throws QuimpPluginException {
+    if (table.window != window) {
+      throw new QuimpPluginException("Rank table computed for other window");
+    }
+    validateSelection();
+    return selectCandidates(table, log, table.points, table.outline::toList);
+  }
+
+  private void validateWindow(int size) throws QuimpPluginException {
+    if (window % 2 == 0 || window < 0) {
+      throw new QuimpPluginException("Window must be uneven, positive and larger than 0");
+    }
+    if (window >= size) {
+      throw new QuimpPluginException("Processing window to long");
+    }
+    if (window < 3) {
+      throw new QuimpPluginException("Window should be larger than 2");
+    }
+  }
+
+  private void validateSelection() throws QuimpPluginException {
+    if (pnum <= 0) {
+      throw new QuimpPluginException("Number of protrusions should be larger than 0");
+    }
+    if (alevmin < 0 || alevmax < 0) {
+      throw new QuimpPluginException("Acceptacne level should be positive");
+    }
+  }
+
+  /**
+   * Step 1 for validated parameters.
+   * 
+   * @param points input outline
+   * @param primitive the same outline as <tt>points</tt> stored in arrays, <tt>null</tt> to copy
+   *        it from <tt>points</tt>
+   * @param cache data of previous outline, can be <tt>null</tt>
+   * @param positions window positions to rank, <tt>null</tt> for all
+   */
+  private RankTable computeRankTable(List<Point2d> points, Outline primitive, RankCache cache,
+          BitSet positions) {
+    long time = metrics != null ? System.nanoTime() : 0;
+    // recorder of JFR events, null if not recorded. Run is finished by the first selection
+    HatFilterRecorder events =
+            RECORDERS != null ? RECORDERS.begin(points.size(), window, pnum) : null;
+    if (events != null) {
+      events.beginRankTable();
+    }
+    // primitive copy of input used by filter core
+    Outline outline = primitive != null ? primitive : new Outline(points);
+    int n = outline.size();
+    // store information if points for window at r position are convex compared to shape without
+    // these points. Flag is true if all window points are inside (concave). In lazy mode flags are
+    // evaluated in Step 2 only for windows that are really checked
+    ConvexityTable convex = new ConvexityTable(new ConvexityIndex(outline), window);
+    // weighting of every window position
+    double[] weights = new double[n];
+    // positions with weighting taken from previous outline, null if all must be computed
+    boolean[] known = null;
+    int reusedWeights = 0; // number of weightings taken from previous outline
+    int reusedConvex = 0; // number of convexity flags taken from previous outline
+    if (cache != null && cache.prepare(outline, window, crossingDefective)) {
+      known = new boolean[n];
+      for (int r = 0; r < n; r++) {
+        if (cache.isWeightValid(r)) {
+          weights[r] = cache.getWeight(r);
+          known[r] = true;
+          reusedWeights++;
+        }
+        if (cache.isConvexityValid(r)) {
+          convex.reuse(cache.getConvexity(), r);
+          if (convex.isKnown(r)) {
+            reusedConvex++;
+          }
+        }
+      }
+    }
+
+    double[] circ = computeRankTable(outline, new SlidingCircularity(outline), convex, weights,
+            known, positions);
+    if (cache != null) {
+      cache.store(outline, window, crossingDefective, weights, convex);
+    }
+    // flags evaluated in Step 2 are counted by selection
+    int convexityTests = metrics != null ? convex.countKnown() - reusedConvex : 0;
+    if (events != null) {
+      events.endPhase(0);
+    }
+    int evaluated = positions != null ? positions.cardinality() : n - reusedWeights;
+    return new RankTable(points, outline, window, circ, convex, events,
+            metrics != null ? System.nanoTime() - time : 0, evaluated, convexityTests);
+  }
+
+  /**
+   * Steps 2 and 3 for validated parameters.
+   * 
+   * <p>The first selection made with table finishes run started by computing table, statistics
+   * and events of Step 1 are reported with it.
+   * 
+   * @param table rank table
+   * @param log receiver of messages for user, can be <tt>null</tt>
+   * @param unchanged result returned if all candidates are below acceptance level
+   * @param assembly Step 3, forms result from outline of table and its vertices to remove
+   * @param <T> type of result
+   */
+  private <T> T selectCandidates(RankTable table, Consumer<String> log, T unchanged,
+          Function<BitSet, T> assembly) {
+    long time = metrics != null ? System.nanoTime() : 0; // start of current step
+    int convexBefore = metrics != null ? table.convex.countKnown() : 0;
+    // statistics of Step 1 are added to the first selection only
+    boolean first = table.claimStatistics();
+    HatFilterRecorder events = first ? table.events
+            : RECORDERS != null ? RECORDERS.begin(table.outline.size(), window, pnum) : null;
+    long step1Time = first ? table.time : 0;
+    int windowsEvaluated = first ? table.windowsEvaluated : 0;
+    int convexityTests = first ? table.convexityTests : 0;
+    if (events != null) {
+      events.beginCandidateSelection();
+    }
+    Outline outline = table.outline;
+    int n = outline.size();
+    double[] circ = table.circ;
+    ConvexityTable convex = table.convex;
+
+    // Step 2 - Check criterion for all windows
+    // window positions ordered by rank, descending. Equal ranks are ordered by position
+    int[] order = table.getOrder();
+    // vertices covered by accepted windows. Windows wrap around end of data
+    BitSet removed = new BitSet(n);
+    if (LOGGER.isDebugEnabled()) {
+      double[] circsorted = new double[n];
+      for (int r = 0; r < n; r++) {
+        circsorted[r] = circ[order[r]];
+      }
+      LOGGER.debug("cirs: " + Arrays.toString(circsorted));
+    }
+    if (LOGGER.isTraceEnabled()) {
+      LOGGER.trace("circ: " + Arrays.toString(circ));
+    }
+
+    if (circ[order[0]] < alevmin) {
+      if (metrics != null) { // all candidates are below acceptance level
+        metrics.record(step1Time, System.nanoTime() - time, 0, windowsEvaluated, convexityTests,
+                n, 0, 0, 0);
+      }
+      if (events != null) {
+        events.end(0);
+      }
+      return unchanged; // just return non-modified data;
+    }
+
+    int found = 0; // how many protrusions we have found already
+    int rejectedLevel = 0; // number of candidates outside acceptance levels
+    int rejectedOverlap = 0; // number of candidates overlapping found windows
+    int rejectedConvex = 0; // number of concave candidates
+    // current index in order - number of window to analyze
+    for (int i = 0; found < pnum; i++) { // do as long as we find pnum protrusions
+      if (i >= n) { // no more data to check, probably we have less prot. pnum
+        LOGGER.debug("Can find next candidate. Use smaller window or change alev");
+        if (log != null) {
+          log.accept("Can find next candidate. Use smaller window or change alev");
+        }
+        break;
+      }
+      int startpos = order[i]; // position of window that gave this rank
+      // if ith circularity beyond range
+      if (circ[startpos] < alevmin || circ[startpos] > alevmax) {
+        rejectedLevel++;
+        continue;
+      }
+      if (found > 0) { // first candidate always accepted
+        // this window must not overlap with those found already
+        if (isOccupied(removed, n, startpos, window)) {
+          rejectedOverlap++;
+          continue;
+        }
+        // and it must be convex
+        if (convex.get(startpos)) {
+          rejectedConvex++;
+          continue;
+        }
+      }
+      // store indexes that belong to window
+      occupy(removed, n, startpos, window);
+      if (LOGGER.isTraceEnabled()) {
+        LOGGER.trace("added win for i=" + i + " startpos=" + startpos + " coord:"
+                + outline.getPoint(startpos).toString());
+      }
+      found++;
+    }
+    if (LOGGER.isTraceEnabled()) {
+      LOGGER.trace("winpos: " + removed.toString());
+    }
+    long step2Time = 0;
+    if (metrics != null) {
+      long now = System.nanoTime();
+      step2Time = now - time;
+      time = now;
+      convexityTests += convex.countKnown() - convexBefore;
+    }
+    if (events != null) {
+      events.endPhase(found);
+      events.beginOutputAssembly();
+    }
+    // Step 3 - remove selected windows from input data
+    // points not covered by any accepted window are copied to new array
+    T out = assembly.apply(removed);
+    if (metrics != null) {
+      metrics.record(step1Time, step2Time, System.nanoTime() - time, windowsEvaluated,
+              convexityTests, rejectedLevel, rejectedOverlap, rejectedConvex, found);
+    }
+    if (events != null) {
+      events.end(found);
+    }
+    return out;
+  }
+  /**
+   * Compute normalised rank table of all window positions (Step 1).
+   * 
+   * <p>Prefix tables of outline and index of its edges do not depend on window size, so they can
+   * be shared by engines with different windows, see {@link MultiScaleHatFilter}.
+   * 
+   * @param outline outline to process
+   * @param sliding circularities of outline
+   * @param convex convexity flags for window of this engine, evaluated unless lazy mode is set
+   * @param weights weightings of windows, computed ones are stored here
+   * @param known positions with known weighting, <tt>null</tt> if none is known
+   * @param positions positions to rank, <tt>null</tt> for all. Rank of other positions is
+   *        negative infinity.
+   * @return ranks of window positions normalised to maximum. Index is related to window position
+   *         (index of first point covered by window)
+   * @throws CancellationException if calling thread has been interrupted
+   */
+  double[] computeRankTable(Outline outline, SlidingCircularity sliding, ConvexityTable convex,
+          double[] weights, boolean[] known, BitSet positions) {
+    int n = outline.size();
+    // array to store circularity for window positions
+    double[] circ = new double[n];
+    // circularities of shape without window for all window positions
+    double[] circnowindow = sliding.getCircularities(window);
+    // window positions are independent, large outlines are split between threads
+    if (pool != null && pool.getParallelism() > 1 && n >= parallelThreshold) {
+      int leaf = Math.max(MIN_PARALLEL_LEAF, n / (4 * pool.getParallelism()));
+      // threads of pool are not interrupted with calling thread, they check this flag instead
+      AtomicBoolean cancelled = new AtomicBoolean();
+      RankTask task = new RankTask(circ, weights, known, positions, circnowindow, outline, convex,
+              cancelled, 0, n, leaf);
+      pool.execute(task);
+      try {
+        task.get();
+      } catch (InterruptedException e) {
+        cancelled.set(true);
+        Thread.currentThread().interrupt();
+        throw new CancellationException("Filtering interrupted");
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new IllegalStateException(cause);
+      }
+    } else {
+      computeRanks(circ, weights, known, positions, circnowindow, outline, convex, null, 0, n);
+    }
+    // normalize circularity to 1
+    double maxCirc = circ[0];
+    for (int r = 1; r < n; r++) {
+      if (Double.compare(circ[r], maxCirc) > 0) { // the same ordering as Collections.max
+        maxCirc = circ[r];
+      }
+    }
+    for (int r = 0; r < n; r++) {
+      if (positions != null && !positions.get(r)) {
+        continue;
+      }
+      if (maxCirc != 0.0) {
+        circ[r] = circ[r] / maxCirc;
+      } else {
+        circ[r] = 0.0;
+      }
+    }
+    return circ;
+  }
+
+  /**
+   * Compute weighted circularities for range of window positions.
+   * 
+   * <p>Fills <tt>circ</tt> for positions <tt>lo</tt>..<tt>hi-1</tt> and, if lazy mode is not
+   * selected, convexity flags for these positions. Weightings of these positions are computed
+   * unless they are already known. Other elements are not touched so disjoint ranges can be
+   * processed concurrently.
+   * 
+   * @param circ output array of weighted circularities
+   * @param weights weightings of windows, computed ones are stored here
+   * @param known positions with known weighting, <tt>null</tt> if none is known
+   * @param positions positions to rank, <tt>null</tt> for all
+   * @param circnowindow circularities of outline without window
+   * @param outline input outline, not modified
+   * @param convex convexity flags
+   * @param cancelled flag of cancelled parallel computation, <tt>null</tt> if range is computed by
+   *        calling thread
+   * @param lo first window position, inclusive
+   * @param hi last window position, exclusive
+   * @throws CancellationException if computation has been cancelled
+   */
+  private void computeRanks(double[] circ, double[] weights, boolean[] known, BitSet positions,
+          double[] circnowindow, Outline outline, ConvexityTable convex, AtomicBoolean cancelled,
+          int lo, int hi) {
+    int n = outline.size();
+    double tmpCirc;
+    boolean trace = LOGGER.isTraceEnabled();
+    // tests of window polygons, positions are visited in order so tests are incremental
+    WindowIntersections crossing =
+            crossingDefective ? new WindowIntersections(outline, window) : null;
+    for (int r = lo; r < hi; r++) {
+      if ((r & 0xff) == 0) {
+        checkCancelled(cancelled);
+      }
+      if (positions != null && !positions.get(r)) {
+        circ[r] = Double.NEGATIVE_INFINITY; // never a candidate
+        continue;
+      }
+      tmpCirc = circnowindow[r];
+      if (trace) {
+        LOGGER.trace("------- Iter: " + r + "-------");
+        // all points except window. Window covers points r - (r+window-1)
+        LOGGER.trace("sub: "
+                + new CircularSubList<>(outline.asList(), r + window, n - window).toString());
+        LOGGER.trace("circ " + tmpCirc);
+      }
+      if (known == null || !known[r]) {
+        // calculate weighting for circularity
+        if (trace) {
+          LOGGER.trace("win: " + new CircularSubList<>(outline.asList(), r, window).toString());
+        }
+        // calculate weighting for window content directly on coordinates of outline
+        boolean defective = crossing != null && crossing.isCrossing(r);
+        weights[r] = getWeighting(outline.x, outline.y, r, window, n, defective);
+      }
+      tmpCirc /= weights[r];
+      if (trace) {
+        LOGGER.trace("Wcirc " + tmpCirc);
+      }
+      circ[r] = tmpCirc; // store weighted circularity for shape without window
+    }
+    if (!lazyConvexity) {
+      convex.compute(lo, hi);
+    }
+  }
+
+  /**
+   * Parallel version of {@link HatFilterEngine#computeRanks}.
+   * 
+   * <p>Range of window positions is split in halves until it is not longer than leaf size. Every
+   * position is computed exactly as in serial version, therefore results do not depend on number
+   * of threads. Tasks stop when flag of cancelled computation is set.
+   * 
+   * @author p.baniukiewicz
+   *
+   */
+  class RankTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final double[] circ;
+    private final double[] weights;
+    private final boolean[] known;
+    private final BitSet positions;
+    private final double[] circnowindow;
+    private final Outline outline;
+    private final ConvexityTable convex;
+    private final AtomicBoolean cancelled;
+    private final int lo;
+    private final int hi;
+    private final int leaf;
+
+    RankTask(double[] circ, double[] weights, boolean[] known, BitSet positions,
+            double[] circnowindow, Outline outline, ConvexityTable convex,
+            AtomicBoolean cancelled, int lo, int hi, int leaf) {
+      this.circ = circ;
+      this.weights = weights;
+      this.known = known;
+      this.positions = positions;
+      this.circnowindow = circnowindow;
+      this.outline = outline;
+      this.convex = convex;
+      this.cancelled = cancelled;
+      this.lo = lo;
+      this.hi = hi;
+      this.leaf = leaf;
+    }
+
+    @Override
+    protected void compute() {
+      checkCancelled(cancelled);
+      if (hi - lo <= leaf) {
+        computeRanks(circ, weights, known, positions, circnowindow, outline, convex, cancelled,
+                lo, hi);
+      } else {
+        int mid = (lo + hi) >>> 1;
+        invokeAll(
+                new RankTask(circ, weights, known, positions, circnowindow, outline, convex,
+                        cancelled, lo, mid, leaf),
+                new RankTask(circ, weights, known, positions, circnowindow, outline, convex,
+                        cancelled, mid, hi, leaf));
+      }
+    }
+  }
+
+  /**
+   * Stop processing if current thread has been interrupted.
+   * 
+   * <p>Used for cancelling previews that are no longer needed. Threads of pool computing rank
+   * table are not interrupted, thread waiting for them cancels their computation instead (see
+   * {@link #checkCancelled(AtomicBoolean)}).
+   * 
+   * @throws CancellationException if thread has been interrupted
+   */
+  static void checkInterrupted() {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new CancellationException("Filtering interrupted");
+    }
+  }
+
+  /**
+   * Stop computing rank table if it has been cancelled.
+   * 
+   * <p>Calling thread waiting for parallel computation can also execute its tasks. If it has been
+   * interrupted, it sets the flag for other threads.
+   * 
+   * @param cancelled flag of cancelled parallel computation, <tt>null</tt> if table is computed by
+   *        calling thread
+   * @throws CancellationException if computation has been cancelled or current thread has been
+   *         interrupted
+   */
+  private static void checkCancelled(AtomicBoolean cancelled) {
+    if (cancelled == null) {
+      checkInterrupted();
+      return;
+    }
+    if (!cancelled.get() && Thread.currentThread().isInterrupted()) {
+      cancelled.set(true);
+    }
+    if (cancelled.get()) {
+      throw new CancellationException("Filtering interrupted");
+    }
+  }
+
+  /**
+   * Load source of Java Flight Recorder events.
+   * 
+   * <p>Events are implemented in separate source set built only by JDK providing
+   * <tt>jdk.jfr</tt>, see {@link HatFilterRecorder}.
+   * 
+   * @return source of events or <tt>null</tt> if JFR or events are not present in runtime
+   */
+  private static HatFilterRecorder.Factory loadRecorders() {
+    try {
+      Class.forName("jdk.jfr.Event");
+      return Class.forName("quimp.plugin.HatFilterEvents$Source")
+              .asSubclass(HatFilterRecorder.Factory.class).getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      LOGGER.debug("JFR events disabled: " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Sort positions of array by its values in descending order.
+   * 
+   * <p>Values are ordered as by {@link Double#compare(double, double)}, equal values are ordered
+   * by their positions in ascending order, therefore result is always the same for the same input.
+   * 
+   * @param a array of values, not modified
+   * @return positions of elements of a, position of the largest value is first
+   */
+  static int[] argsortDescending(double[] a) {
+    int n = a.length;
+    // keys with signed order the same as Double.compare
+    long[] keys = new long[n];
+    int[] idx = new int[n];
+    for (int i = 0; i < n; i++) {
+      long bits = Double.doubleToLongBits(a[i]);
+      keys[i] = bits ^ ((bits >> 63) & Long.MAX_VALUE);
+      idx[i] = i;
+    }
+    // stable bottom-up merge sort, initial order of positions is kept for equal keys
+    int[] tmp = new int[n];
+    for (int width = 1; width < n; width *= 2) {
+      for (int lo = 0; lo < n; lo += 2 * width) {
+        int mid = Math.min(lo + width, n);
+        int hi = Math.min(lo + 2 * width, n);
+        int l = lo;
+        int r = mid;
+        for (int k = lo; k < hi; k++) {
+          if (l < mid && (r >= hi || keys[idx[l]] >= keys[idx[r]])) {
+            tmp[k] = idx[l++];
+          } else {
+            tmp[k] = idx[r++];
+          }
+        }
+      }
+      int[] swap = idx;
+      idx = tmp;
+      tmp = swap;
+    }
+    return idx;
+  }
+
+  /**
+   * Check if any point of window is already marked.
+   * 
+   * @param marked marked points
+   * @param n number of points
+   * @param startpos position of window, window wraps around end of data
+   * @param len size of window
+   * @return true if window covers any marked point
+   */
+  static boolean isOccupied(BitSet marked, int n, int startpos, int len) {
+    int end = startpos + len; // exclusive
+    if (end <= n) {
+      int next = marked.nextSetBit(startpos);
+      return next >= 0 && next < end;
+    }
+    int next = marked.nextSetBit(startpos); // part at the end of data
+    if (next >= 0 && next < n) {
+      return true;
+    }
+    next = marked.nextSetBit(0); // part wrapped to beginning of data
+    return next >= 0 && next < end - n;
+  }
+
+  /**
+   * Mark all points of window.
+   * 
+   * @param marked marked points
+   * @param n number of points
+   * @param startpos position of window, window wraps around end of data
+   * @param len size of window
+   */
+  static void occupy(BitSet marked, int n, int startpos, int len) {
+    int end = startpos + len; // exclusive
+    if (end <= n) {
+      marked.set(startpos, end);
+    } else {
+      marked.set(startpos, n);
+      marked.set(0, end - n);
+    }
+  }
+
+  /**
+   * Calculates weighting based on distribution of window points.
+   * 
+   * <p>Calculates center of mass of window points and then standard deviations of lengths between
+   * this point and every other point. Cumulated distributions like protrusions give smaller
+   * values than elongated ones.
+   * 
+   * <p>If input polygon <i>snakePolygon</i> (which is only part of whole cell shape) is defective,
+   * i.e
+   * its
+   * edges cross, the weight is calculated using middle vector defined as mean of coordinates.
+   * 
+   * <p>Standard deviation is normalised by number of points in whole outline, not in window.
+   * 
+   * @param p Polygon vertices
+   * @param n number of points in outline
+   * @return Weight
+   * @see #getWeighting(double[], double[], int, int, int, boolean)
+   */
+  static double getWeighting(final List<Point2d> p, int n) {
+    Outline o = new Outline(p);
+    boolean defective = new WindowIntersections(o, o.size()).isCrossing(0);
+    return getWeighting(o.x, o.y, 0, o.size(), n, defective);
+  }
+
+  /**
+   * Calculates weighting of window of outline stored in arrays.
+   * 
+   * <p>The same as {@link #getWeighting(List, int)} for window at position <i>r</i>, but
+   * coordinates are read in place and nothing is allocated. Center of mass, mean point and
+   * defective polygon (zero area) are found in one pass over window. Center of mass is computed
+   * with the same arithmetic as
+   * {@link com.github.celldynamics.quimp.geom.BasicPolygons#polygonCenterOfMass(List)}, including
+   * absolute values of its coordinates, so the result equals weighting computed with that method.
+   * Lengths are not stored, they are computed again for mean and for deviations.
+   * 
+   * <p>Windows whose edges cross must be marked as defective by caller (see
+   * {@link WindowIntersections}). Both middle points are always computed, so defective windows
+   * cost the same as correct ones.
+   * 
+   * @param x x coordinates of outline
+   * @param y y coordinates of outline
+   * @param r index of first point of window
+   * @param len number of points in window, window is wrapped to the beginning of arrays
+   * @param n number of points in outline
+   * @param defective true to use mean point regardless of area of window
+   * @return Weight
+   */
+  static double getWeighting(double[] x, double[] y, int r, int len, int n, boolean defective) {
+    int size = x.length;
+    double cx = 0; // sums of centre of mass
+    double cy = 0;
+    double area = 0; // doubled signed area, summed as in BasicPolygons.getPolyArea
+    double mx = 0; // sums of mean point
+    double my = 0;
+    int i = r % size;
+    for (int k = 0; k < len; k++) {
+      int j = k == len - 1 ? r % size : (i + 1 == size ? 0 : i + 1); // last edge closes window
+      double f = x[i] * y[j] - x[j] * y[i];
+      cx += (x[i] + x[j]) * f;
+      cy += (y[i] + y[j]) * f;
+      area += x[i] * y[j];
+      area -= y[i] * x[j];
+      mx += x[i];
+      my += y[i];
+      i = j;
+    }
+    double midx;
+    double midy;
+    area = Math.abs(area / 2.0);
+    if (area != 0 && !defective) {
+      double factor = 1.0 / (6.0 * area);
+      midx = Math.abs(cx * factor);
+      midy = Math.abs(cy * factor);
+    } else { // defective polygon, get middle point as mean
+      midx = mx / len;
+      midy = my / len;
+    }
+    // mean of lengths between points and middle
+    double mean = 0;
+    i = r % size;
+    for (int k = 0; k < len; k++) {
+      double dx = midx - x[i];
+      double dy = midy - y[i];
+      double d = Math.sqrt(dx * dx + dy * dy);
+      mean += d;
+      i = i + 1 == size ? 0 : i + 1;
+    }
+    mean /= len;
+    // sum of squared deviations of lengths
+    double m2 = 0;
+    i = r % size;
+    for (int k = 0; k < len; k++) {
+      double dx = midx - x[i];
+      double dy = midy - y[i];
+      double d = Math.sqrt(dx * dx + dy * dy) - mean;
+      m2 += d * d;
+      i = i + 1 == size ? 0 : i + 1;
+    }
+    double std = Math.sqrt(m2 / n);
+
+    if (LOGGER.isTraceEnabled()) {
+      LOGGER.trace("w " + std);
+    }
+    return std;
+  }
+
+  /**
+   * Builder of {@link HatFilterEngine}.
+   * 
+   * <p>Filter parameters default to initial values of plugin. Parameters are validated when
+   * outline is processed.
+   * 
+   * @author p.baniukiewicz
+   *
+   */
+  public static final class Builder {
+    private int window = 15;
+    private int pnum = 1;
+    private double alevmin = 0;
+    private double alevmax = 1;
+    private boolean lazyConvexity = true;
+    private boolean crossingDefective = true;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    private HatFilterMetrics metrics;
+
+    private Builder() {
+    }
+
+    /**
+     * Set size of window.
+     * 
+     * @param window size of window
+     * @return this builder
+     */
+    public Builder window(int window) {
+      this.window = window;
+      return this;
+    }
+
+    /**
+     * Set number of protrusions to remove.
+     * 
+     * @param pnum number of protrusions
+     * @return this builder
+     */
+    public Builder pnum(int pnum) {
+      this.pnum = pnum;
+      return this;
+    }
+
+    /**
+     * Set minimal acceptance level.
+     * 
+     * @param alevmin acceptance level
+     * @return this builder
+     */
+    public Builder alevmin(double alevmin) {
+      this.alevmin = alevmin;
+      return this;
+    }
+
+    /**
+     * Set maximal acceptance level.
+     * 
+     * @param alevmax acceptance level
+     * @return this builder
+     */
+    public Builder alevmax(double alevmax) {
+      this.alevmax = alevmax;
+      return this;
+    }
+
+    /**
+     * Set filter parameters from configuration of plugin.
+     * 
+     * @param par filter parameters, the same as accepted by
+     *        {@link HatSnakeFilter_#setPluginConfig(ParamList)}
+     * @return this builder
+     * @throws QuimpPluginException on wrong parameters list or wrong parameter conversion
+     */
+    public Builder config(final ParamList par) throws QuimpPluginException {
+      try {
+        int w = par.getIntValue("window");
+        int p = par.getIntValue("pnum");
+        double amin = par.getDoubleValue("alevmin");
+        double amax = par.getDoubleValue("alevmax");
+        return window(w).pnum(p).alevmin(amin).alevmax(amax);
+      } catch (Exception e) {
+        throw new QuimpPluginException("Wrong input argument->" + e.getMessage(), e);
+      }
+    }
+
+    /**
+     * Select when convexity of windows is evaluated.
+     * 
+     * @param lazyConvexity true to test convexity on demand (default)
+     * @return this builder
+     * @see HatSnakeFilter_#setLazyConvexity(boolean)
+     */
+    public Builder lazyConvexity(boolean lazyConvexity) {
+      this.lazyConvexity = lazyConvexity;
+      return this;
+    }
+
+    /**
+     * Select which windows are defective.
+     * 
+     * <p>Weighting of defective window uses mean point of window instead of its center of mass
+     * (see {@link HatFilterEngine#getWeighting(List, int)}). By default windows of zero area and
+     * windows whose edges cross are defective, as in previous versions of plugin where center of
+     * mass of such windows could not be computed. Tests are performed without exceptions, see
+     * {@link WindowIntersections}. If disabled, only windows of zero area are defective and
+     * crossing windows use center of mass computed from their shoelace area, which saves the
+     * test but changes ranks of self-intersecting outlines. {@link RankCache} is rebuilt when
+     * setting changes.
+     * 
+     * @param crossingDefective true to treat windows with crossing edges as defective, default
+     *        true
+     * @return this builder
+     */
+    public Builder crossingDefective(boolean crossingDefective) {
+      this.crossingDefective = crossingDefective;
+      return this;
+    }
+
+    /**
+     * Set pool used for computing rank table of large outlines.
+     * 
+     * @param pool pool to use, <tt>null</tt> for serial computation. Common pool by default.
+     * @return this builder
+     * @see HatSnakeFilter_#setForkJoinPool(ForkJoinPool)
+     */
+    public Builder forkJoinPool(ForkJoinPool pool) {
+      this.pool = pool;
+      return this;
+    }
+
+    /**
+     * Set minimal number of outline points for parallel computation of rank table.
+     * 
+     * @param parallelThreshold number of points
+     * @return this builder
+     * @see HatSnakeFilter_#setParallelThreshold(int)
+     */
+    public Builder parallelThreshold(int parallelThreshold) {
+      this.parallelThreshold = parallelThreshold;
+      return this;
+    }
+
+    /**
+     * Set receiver of statistics of filter runs.
+     * 
+     * @param metrics object to add statistics to, <tt>null</tt> to disable collecting them
+     *        (default)
+     * @return this builder
+     * @see HatSnakeFilter_#setMetrics(HatFilterMetrics)
+     */
+    public Builder metrics(HatFilterMetrics metrics) {
+      this.metrics = metrics;
+      return this;
+    }
+
+    /**
+     * Create engine.
+     * 
+     * @return engine with parameters of this builder
+     */
+    public HatFilterEngine build() {
+      return new HatFilterEngine(this);
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package quimp.plugin;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of HatFilter runs.
+ *
+ * <p>Collects processing times of three steps of algorithm (see {@link HatSnakeFilter_}) and
+ * counters related to candidates search. Values are summed over all runs recorded in this object,
+ * so one instance can be shared by many filters and threads, e.g. for the whole stack. Instances
+ * can be also merged by {@link #add(HatFilterMetrics)}.
+ *
+ * <p>Metrics are collected only if object is attached to filter, otherwise filter does not measure
+ * anything.
+ *
+ * @author p.baniukiewicz
+ * @see HatSnakeFilter_#setMetrics(HatFilterMetrics)
+ */
+public class HatFilterMetrics {
+  private final LongAdder runs = new LongAdder();
+  private final LongAdder step1Time = new LongAdder();
+  private final LongAdder step2Time = new LongAdder();
+  private final LongAdder step3Time = new LongAdder();
+  private final LongAdder windowsEvaluated = new LongAdder();
+  private final LongAdder convexityTests = new LongAdder();
+  private final LongAdder rejectedByLevel = new LongAdder();
+  private final LongAdder rejectedByOverlap = new LongAdder();
+  private final LongAdder rejectedByConvexity = new LongAdder();
+  private final LongAdder protrusionsRemoved = new LongAdder();
+  private final LongAdder approximateRuns = new LongAdder();
+
+  /**
+   * Record one run of filter.
+   *
+   * @param step1 time of building rank table in ns
+   * @param step2 time of candidates search in ns
+   * @param step3 time of forming output in ns
+   * @param windows number of window positions with computed weighting
+   * @param convexity number of convexity tests
+   * @param level number of candidates rejected by acceptance levels
+   * @param overlap number of candidates rejected by overlapping with found windows
+   * @param convex number of candidates rejected by convexity
+   * @param removed number of removed protrusions
+   */
+  void record(long step1, long step2, long step3, int windows, int convexity, int level,
+          int overlap, int convex, int removed) {
+    runs.increment();
+    step1Time.add(step1);
+    step2Time.add(step2);
+    step3Time.add(step3);
+    windowsEvaluated.add(windows);
+    convexityTests.add(convexity);
+    rejectedByLevel.add(level);
+    rejectedByOverlap.add(overlap);
+    rejectedByConvexity.add(convex);
+    protrusionsRemoved.add(removed);
+  }
+
+  /**
+   * Record that last run evaluated only part of window positions.
+   */
+  void recordApproximate() {
+    approximateRuns.increment();
+  }
+
+  /**
+   * Add metrics collected by other object to this one.
+   *
+   * @param other metrics to add, not modified
+   */
+  public void add(HatFilterMetrics other) {
+    runs.add(other.getRuns());
+    step1Time.add(other.getStep1Time());
+    step2Time.add(other.getStep2Time());
+    step3Time.add(other.getStep3Time());
+    windowsEvaluated.add(other.getWindowsEvaluated());
+    convexityTests.add(other.getConvexityTests());
+    rejectedByLevel.add(other.getRejectedByLevel());
+    rejectedByOverlap.add(other.getRejectedByOverlap());
+    rejectedByConvexity.add(other.getRejectedByConvexity());
+    protrusionsRemoved.add(other.getProtrusionsRemoved());
+    approximateRuns.add(other.getApproximateRuns());
+  }
+
+  /**
+   * Clear all metrics.
+   */
+  public void reset() {
+    runs.reset();
+    step1Time.reset();
+    step2Time.reset();
+    step3Time.reset();
+    windowsEvaluated.reset();
+    convexityTests.reset();
+    rejectedByLevel.reset();
+    rejectedByOverlap.reset();
+    rejectedByConvexity.reset();
+    protrusionsRemoved.reset();
+    approximateRuns.reset();
+  }
+
+  /**
+   * Number of recorded runs.
+   *
+   * <p>Runs stopped by wrong parameters are not recorded.
+   *
+   * @return number of runs
+   */
+  public long getRuns() {
+    return runs.sum();
+  }
+
+  /**
+   * Time spent in the first step of algorithm (rank table).
+   *
+   * @return time in ns
+   */
+  public long getStep1Time() {
+    return step1Time.sum();
+  }
+
+  /**
+   * Time spent in the second step of algorithm (candidates search).
+   *
+   * @return time in ns
+   */
+  public long getStep2Time() {
+    return step2Time.sum();
+  }
+
+  /**
+   * Time spent in the third step of algorithm (forming output).
+   *
+   * @return time in ns
+   */
+  public long getStep3Time() {
+    return step3Time.sum();
+  }
+
+  /**
+   * Number of window positions for which weighting was computed.
+   *
+   * <p>Positions with weighting reused from previous outline are not counted (see
+   * {@link HatSnakeFilter_#setWarmStart(boolean)}).
+   *
+   * @return number of window positions
+   */
+  public long getWindowsEvaluated() {
+    return windowsEvaluated.sum();
+  }
+
+  /**
+   * Number of convexity tests of windows.
+   *
+   * @return number of tests
+   */
+  public long getConvexityTests() {
+    return convexityTests.sum();
+  }
+
+  /**
+   * Number of candidates with rank outside acceptance levels.
+   *
+   * @return number of candidates
+   */
+  public long getRejectedByLevel() {
+    return rejectedByLevel.sum();
+  }
+
+  /**
+   * Number of candidates overlapping windows found before.
+   *
+   * @return number of candidates
+   */
+  public long getRejectedByOverlap() {
+    return rejectedByOverlap.sum();
+  }
+
+  /**
+   * Number of concave candidates.
+   *
+   * @return number of candidates
+   */
+  public long getRejectedByConvexity() {
+    return rejectedByConvexity.sum();
+  }
+
+  /**
+   * Number of removed protrusions.
+   *
+   * @return number of protrusions
+   */
+  public long getProtrusionsRemoved() {
+    return protrusionsRemoved.sum();
+  }
+
+  /**
+   * Number of runs that evaluated only part of window positions.
+   *
+   * <p>Such runs are made by {@link MultiResolutionHatFilter} and their result may differ from
+   * exact mode. Fraction of evaluated positions can be estimated from
+   * {@link #getWindowsEvaluated()}.
+   *
+   * @return number of runs, included in {@link #getRuns()}
+   */
+  public long getApproximateRuns() {
+    return approximateRuns.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "HatFilterMetrics [runs=" + getRuns() + ", step1Time=" + getStep1Time()
+            + ", step2Time=" + getStep2Time() + ", step3Time=" + getStep3Time()
+            + ", windowsEvaluated=" + getWindowsEvaluated() + ", convexityTests="
+            + getConvexityTests() + ", rejectedByLevel=" + getRejectedByLevel()
+            + ", rejectedByOverlap=" + getRejectedByOverlap() + ", rejectedByConvexity="
+            + getRejectedByConvexity() + ", protrusionsRemoved=" + getProtrusionsRemoved()
+            + ", approximateRuns=" + getApproximateRuns() + "]";
+  }
+}
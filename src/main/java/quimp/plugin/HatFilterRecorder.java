@@ -0,0 +1,62 @@
+package quimp.plugin;
+
+/**
+ * Receiver of events of HatFilter runs.
+ *
+ * <p>One recorder follows one run of filter: it is obtained from {@link Factory} when run starts
+ * and then notified about beginning and end of every step of algorithm (see
+ * {@link HatSnakeFilter_}). Implementation emitting Java Flight Recorder events is kept in
+ * separate source set, because it needs JDK with <tt>jdk.jfr</tt> to compile. It is loaded by
+ * {@link HatFilterEngine} if present in runtime.
+ *
+ * @author p.baniukiewicz
+ */
+interface HatFilterRecorder {
+
+  /**
+   * Start the first step (rank table).
+   */
+  void beginRankTable();
+
+  /**
+   * Start the second step (candidate selection).
+   */
+  void beginCandidateSelection();
+
+  /**
+   * Start the third step (output assembly).
+   */
+  void beginOutputAssembly();
+
+  /**
+   * Finish current step.
+   *
+   * @param removed number of protrusions removed so far
+   */
+  void endPhase(int removed);
+
+  /**
+   * Finish filter run and its current step.
+   *
+   * @param removed number of removed protrusions
+   */
+  void end(int removed);
+
+  /**
+   * Source of recorders.
+   *
+   * @author p.baniukiewicz
+   */
+  interface Factory {
+
+    /**
+     * Start recording of filter run.
+     *
+     * @param size number of outline vertices
+     * @param window window size
+     * @param pnum number of protrusions to remove
+     * @return recorder of this run or <tt>null</tt> if run is not recorded
+     */
+    HatFilterRecorder begin(int size, int window, int pnum);
+  }
+}
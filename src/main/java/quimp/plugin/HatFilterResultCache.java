@@ -0,0 +1,238 @@
+package quimp.plugin;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.scijava.vecmath.Point2d;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded cache of HatFilter results.
+ *
+ * <p>Results are keyed by content of input outline and parameters of {@link HatFilterEngine} that
+ * produced them (window, number of protrusions, acceptance levels and treatment of crossing
+ * windows), so byte-identical outlines passed again, e.g. by repeated run of BOA pipeline, are not
+ * filtered again. Settings that do not change result, like pool or lazy convexity, are not part of
+ * key. Content hash is only used for finding entry, outlines are always compared exactly.
+ *
+ * <p>Least recently used entries are evicted when number of entries or estimated memory taken by
+ * them exceeds limits. Outlines are stored as primitive arrays and results are returned as new
+ * lists, so cached data can not be modified by caller. Cache can be shared by many filters and
+ * threads.
+ *
+ * @author p.baniukiewicz
+ * @see HatSnakeFilter_#setResultCache(HatFilterResultCache)
+ */
+public class HatFilterResultCache {
+  static final Logger LOGGER = LoggerFactory.getLogger(HatFilterResultCache.class.getName());
+  /**
+   * Default maximal number of entries.
+   */
+  public static final int DEFAULT_MAX_ENTRIES = 64;
+  /**
+   * Default maximal estimated size of entries in bytes.
+   */
+  public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+  /**
+   * Estimated size of entry without coordinates in bytes.
+   */
+  static final int ENTRY_OVERHEAD = 256;
+
+  private final int maxEntries;
+  private final long maxBytes;
+  // entries in access order, the eldest one is first
+  private final LinkedHashMap<Key, Outline> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long bytes; // estimated size of all entries
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  /**
+   * Create cache with default limits.
+   */
+  public HatFilterResultCache() {
+    this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+  }
+
+  /**
+   * Create cache.
+   *
+   * @param maxEntries maximal number of entries
+   * @param maxBytes maximal estimated size of entries in bytes
+   */
+  public HatFilterResultCache(int maxEntries, long maxBytes) {
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Get cached result.
+   *
+   * @param points input outline
+   * @param engine filter
+   * @return copy of result or <tt>null</tt> if not cached
+   */
+  public synchronized List<Point2d> get(List<Point2d> points, HatFilterEngine engine) {
+    Outline result = entries.get(new Key(new Outline(points), engine));
+    if (result == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return result.toList();
+  }
+
+  /**
+   * Store result.
+   *
+   * <p>Result larger than memory limit is not stored.
+   *
+   * @param points input outline, copied
+   * @param engine filter
+   * @param result output of <tt>engine</tt> for <tt>points</tt>, copied
+   */
+  public synchronized void put(List<Point2d> points, HatFilterEngine engine,
+          List<Point2d> result) {
+    Key key = new Key(new Outline(points), engine);
+    Outline value = new Outline(result);
+    long size = size(key, value);
+    if (size > maxBytes || maxEntries <= 0) {
+      LOGGER.debug("Result too large to cache: " + size);
+      return;
+    }
+    Outline old = entries.put(key, value);
+    if (old != null) {
+      bytes -= size(key, old);
+    }
+    bytes += size;
+    // evict least recently used entries, the new one is the last
+    Iterator<Map.Entry<Key, Outline>> it = entries.entrySet().iterator();
+    while (entries.size() > maxEntries || bytes > maxBytes) {
+      Map.Entry<Key, Outline> eldest = it.next();
+      bytes -= size(eldest.getKey(), eldest.getValue());
+      it.remove();
+      evictions++;
+    }
+  }
+
+  /**
+   * Remove all entries. Counters are not cleared.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  /**
+   * Get number of entries.
+   *
+   * @return number of cached results
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Get estimated size of entries.
+   *
+   * @return size in bytes
+   */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Get number of successful lookups.
+   *
+   * @return number of hits
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Get number of lookups of not cached results.
+   *
+   * @return number of misses
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Get number of entries removed due to limits.
+   *
+   * @return number of evictions
+   */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "HatFilterResultCache [entries=" + entries.size() + ", bytes=" + bytes + ", hits="
+            + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+  }
+
+  /**
+   * Estimated size of entry, two coordinates of 8 bytes for every point.
+   */
+  private static long size(Key key, Outline value) {
+    return ENTRY_OVERHEAD + 16L * (key.outline.size() + value.size());
+  }
+
+  /**
+   * Content of outline and parameters of engine affecting result.
+   *
+   * @author p.baniukiewicz
+   */
+  private static class Key {
+    private final Outline outline;
+    private final int window;
+    private final int pnum;
+    private final double alevmin;
+    private final double alevmax;
+    private final boolean crossing;
+    private final int hash;
+
+    Key(Outline outline, HatFilterEngine engine) {
+      this.outline = outline;
+      window = engine.getWindow();
+      pnum = engine.getPnum();
+      alevmin = engine.getAlevmin();
+      alevmax = engine.getAlevmax();
+      crossing = engine.isCrossingDefective();
+      int h = 31 * Arrays.hashCode(outline.x) + Arrays.hashCode(outline.y);
+      h = 31 * h + window;
+      h = 31 * h + pnum;
+      h = 31 * h + Double.hashCode(alevmin);
+      h = 31 * h + Double.hashCode(alevmax);
+      hash = 31 * h + Boolean.hashCode(crossing);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return hash == other.hash && window == other.window && pnum == other.pnum
+              && Double.compare(alevmin, other.alevmin) == 0
+              && Double.compare(alevmax, other.alevmax) == 0 && crossing == other.crossing
+              && Arrays.equals(outline.x, other.outline.x)
+              && Arrays.equals(outline.y, other.outline.y);
+    }
+  }
+}
@@ -0,0 +1,191 @@
+package quimp.plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.scijava.vecmath.Point2d;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.celldynamics.quimp.plugin.ParamList;
+import com.github.celldynamics.quimp.plugin.QuimpPluginException;
+
+/**
+ * Filter outlines of all cells in all frames of time-lapse stack with one set of parameters.
+ *
+ * <p>Outlines are indexed by frame and then by cell. All of them are processed on own
+ * {@link ForkJoinPool} with bounded number of workers. Range of outlines is split recursively
+ * down to single outlines, so idle workers steal work from busy ones and frames with many or
+ * large cells do not delay others. Every outline is filtered exactly as by
+ * {@link HatSnakeFilter_#runPlugin()}, results do not depend on number of workers.
+ *
+ * <p>Pool is released by {@link #close()}.
+ *
+ * @author p.baniukiewicz
+ * @see HatFilterBatch
+ */
+public class HatFilterStack implements AutoCloseable {
+  static final Logger LOGGER = LoggerFactory.getLogger(HatFilterStack.class.getName());
+  private volatile HatFilterEngine engine; // replaced when metrics are attached
+  private final ForkJoinPool pool;
+
+  /**
+   * Receiver of progress of stack processing.
+   *
+   * <p>Called from worker threads after every processed outline, must be thread safe.
+   *
+   * @author p.baniukiewicz
+   *
+   */
+  public interface ProgressListener {
+
+    /**
+     * Report progress.
+     *
+     * @param done number of outlines processed so far
+     * @param total number of all outlines in stack
+     */
+    void progress(int done, int total);
+  }
+
+  /**
+   * Create stack processor using all available processors.
+   *
+   * @param par filter parameters, the same as accepted by
+   *        {@link HatSnakeFilter_#setPluginConfig(ParamList)}
+   * @throws QuimpPluginException on wrong parameters list or wrong parameter conversion
+   */
+  public HatFilterStack(final ParamList par) throws QuimpPluginException {
+    this(par, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Create stack processor.
+   *
+   * @param par filter parameters, the same as accepted by
+   *        {@link HatSnakeFilter_#setPluginConfig(ParamList)}
+   * @param parallelism maximal number of workers
+   * @throws QuimpPluginException on wrong parameters list or wrong parameter conversion
+   */
+  public HatFilterStack(final ParamList par, int parallelism) throws QuimpPluginException {
+    if (parallelism < 1) {
+      throw new QuimpPluginException("Number of workers should be larger than 0");
+    }
+    pool = new ForkJoinPool(parallelism);
+    engine = HatFilterEngine.builder().config(par).forkJoinPool(pool).build();
+  }
+
+  /**
+   * Attach object collecting statistics of filtering.
+   *
+   * @param metrics object to add statistics of every outline to, <tt>null</tt> to stop
+   *        collecting them
+   * @see HatSnakeFilter_#setMetrics(HatFilterMetrics)
+   */
+  public void setMetrics(HatFilterMetrics metrics) {
+    engine = engine.toBuilder().metrics(metrics).build();
+  }
+
+  /**
+   * Filter all outlines of stack.
+   *
+   * @param stack outlines indexed by frame and then by cell, not modified
+   * @param listener receiver of progress, can be <tt>null</tt>
+   * @return results indexed in the same way as input outlines
+   */
+  public List<List<HatFilterBatch.Result>> filter(
+          List<? extends List<? extends List<Point2d>>> stack, ProgressListener listener) {
+    int total = 0;
+    int[] first = new int[stack.size() + 1]; // index of first outline of frame in flat order
+    for (int f = 0; f < stack.size(); f++) {
+      first[f] = total;
+      total += stack.get(f).size();
+    }
+    first[stack.size()] = total;
+    LOGGER.debug("Filtering " + total + " outlines from " + stack.size() + " frames");
+    HatFilterBatch.Result[] res = new HatFilterBatch.Result[total];
+    pool.invoke(new StackTask(engine, stack, first, res, new AtomicInteger(), listener, 0,
+            total));
+    List<List<HatFilterBatch.Result>> ret = new ArrayList<>(stack.size());
+    for (int f = 0; f < stack.size(); f++) {
+      ret.add(Arrays.asList(Arrays.copyOfRange(res, first[f], first[f + 1])));
+    }
+    return ret;
+  }
+
+  /**
+   * Release pool of workers.
+   *
+   * <p>Outlines being processed are finished.
+   */
+  @Override
+  public void close() {
+    pool.shutdown();
+  }
+
+  /**
+   * Filter range of outlines of stack given by flat indexes.
+   *
+   * <p>Engine is given to the task, so all outlines of one call are filtered by the same engine
+   * even if metrics are attached meanwhile.
+   *
+   * @author p.baniukiewicz
+   *
+   */
+  private class StackTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final HatFilterEngine engine;
+    private final List<? extends List<? extends List<Point2d>>> stack;
+    private final int[] first;
+    private final HatFilterBatch.Result[] res;
+    private final AtomicInteger done;
+    private final ProgressListener listener;
+    private final int lo;
+    private final int hi;
+
+    StackTask(HatFilterEngine engine, List<? extends List<? extends List<Point2d>>> stack,
+            int[] first, HatFilterBatch.Result[] res, AtomicInteger done,
+            ProgressListener listener, int lo, int hi) {
+      this.engine = engine;
+      this.stack = stack;
+      this.first = first;
+      this.res = res;
+      this.done = done;
+      this.listener = listener;
+      this.lo = lo;
+      this.hi = hi;
+    }
+
+    @Override
+    protected void compute() {
+      if (hi - lo > 1) {
+        int mid = (lo + hi) >>> 1;
+        invokeAll(new StackTask(engine, stack, first, res, done, listener, lo, mid),
+                new StackTask(engine, stack, first, res, done, listener, mid, hi));
+        return;
+      }
+      if (hi == lo) {
+        return;
+      }
+      // frame containing outline lo, last frame with first[f] <= lo
+      int f = Arrays.binarySearch(first, lo);
+      if (f < 0) {
+        f = -f - 2;
+      } else {
+        while (first[f + 1] == lo) { // skip empty frames
+          f++;
+        }
+      }
+      List<Point2d> outline = stack.get(f).get(lo - first[f]);
+      res[lo] = HatFilterBatch.filterOne(engine, outline);
+      int d = done.incrementAndGet();
+      if (listener != null) {
+        listener.progress(d, res.length);
+      }
+    }
+  }
+}
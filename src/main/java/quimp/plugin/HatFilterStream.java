@@ -0,0 +1,149 @@
+package quimp.plugin;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.scijava.vecmath.Point2d;
+
+import com.github.celldynamics.quimp.plugin.ParamList;
+import com.github.celldynamics.quimp.plugin.QuimpPluginException;
+
+/**
+ * Stream stage filtering outlines lazily.
+ *
+ * <p>Outlines are filtered when filtered stream is consumed, so long sequences of outlines can be
+ * processed without keeping all of them in memory. Stream of results has the same order and
+ * parallelism as input stream. Failure of one outline does not stop processing, error is reported
+ * in {@link HatFilterBatch.Result} instead.
+ *
+ * <p>Stage is based on {@link Spliterator} wrapping spliterator of input. Every part of split
+ * stream is processed by one thread at a time and has its own state. Parts hold consecutive
+ * outlines, so if warm start is enabled (default) rank table data of previous outlines in part are
+ * reused. Data of up to {@value RankCacheSet#DEFAULT_MAX_CELLS} cells are kept per part, so
+ * streams with outlines of many cells interleaved, e.g. frame by frame, are handled as well (see
+ * {@link HatSnakeFilter_#setWarmStart(boolean)}). Results are identical in both modes.
+ *
+ * <p>Example:
+ *
+ * <pre>
+ * <code>
+ * HatFilterStream hfs = new HatFilterStream(hatSnakeFilter.getPluginConfig());
+ * hfs.filter(frames.parallelStream()).map(HatFilterBatch.Result::getOutline).forEach(...);
+ * </code>
+ * </pre>
+ *
+ * @author p.baniukiewicz
+ */
+public class HatFilterStream {
+  private volatile HatFilterEngine engine; // replaced when metrics are attached
+  private volatile boolean warmStart = true;
+
+  /**
+   * Create stage.
+   *
+   * @param par filter parameters, the same as accepted by
+   *        {@link HatSnakeFilter_#setPluginConfig(ParamList)}
+   * @throws QuimpPluginException on wrong parameters list or wrong parameter conversion
+   */
+  public HatFilterStream(final ParamList par) throws QuimpPluginException {
+    engine = HatFilterEngine.fromConfig(par);
+  }
+
+  /**
+   * Enable reusing rank table data of previous outline in stream.
+   *
+   * <p>Applies to streams created after call.
+   *
+   * @param warmStart true to enable warm start
+   */
+  public void setWarmStart(boolean warmStart) {
+    this.warmStart = warmStart;
+  }
+
+  /**
+   * Check if warm start is enabled.
+   *
+   * @return true if enabled
+   */
+  public boolean isWarmStart() {
+    return warmStart;
+  }
+
+  /**
+   * Attach object collecting statistics of filtering.
+   *
+   * @param metrics object to add statistics of every outline to, <tt>null</tt> to stop
+   *        collecting them
+   * @see HatSnakeFilter_#setMetrics(HatFilterMetrics)
+   */
+  public void setMetrics(HatFilterMetrics metrics) {
+    engine = engine.toBuilder().metrics(metrics).build();
+  }
+
+  /**
+   * Filter stream of outlines.
+   *
+   * <p>Outlines are not read from input until returned stream is consumed. Closing returned stream
+   * closes input. All outlines are filtered by the engine configured when this method is called.
+   *
+   * @param outlines outlines to filter, not modified
+   * @return results in order of input outlines
+   */
+  public Stream<HatFilterBatch.Result> filter(Stream<? extends List<Point2d>> outlines) {
+    return StreamSupport
+            .stream(new FilterSpliterator(engine, outlines.spliterator(), warmStart),
+                    outlines.isParallel())
+            .onClose(outlines::close);
+  }
+
+  /**
+   * Spliterator filtering outlines of source spliterator.
+   *
+   * @author p.baniukiewicz
+   */
+  private class FilterSpliterator implements Spliterator<HatFilterBatch.Result> {
+    private final HatFilterEngine engine;
+    private final Spliterator<? extends List<Point2d>> source;
+    private final boolean warmStart;
+    // data of previous outlines of cells in this part, null if not used
+    private final RankCacheSet caches;
+
+    FilterSpliterator(HatFilterEngine engine, Spliterator<? extends List<Point2d>> source,
+            boolean warmStart) {
+      this.engine = engine;
+      this.source = source;
+      this.warmStart = warmStart;
+      caches = warmStart ? new RankCacheSet() : null;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super HatFilterBatch.Result> action) {
+      return source.tryAdvance(o -> action.accept(HatFilterBatch.filterOne(engine, o, caches)));
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super HatFilterBatch.Result> action) {
+      source.forEachRemaining(o -> action.accept(HatFilterBatch.filterOne(engine, o, caches)));
+    }
+
+    @Override
+    public Spliterator<HatFilterBatch.Result> trySplit() {
+      Spliterator<? extends List<Point2d>> prefix = source.trySplit();
+      return prefix == null ? null : new FilterSpliterator(engine, prefix, warmStart);
+    }
+
+    @Override
+    public long estimateSize() {
+      return source.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+      return (source.characteristics() & (ORDERED | SIZED | SUBSIZED | IMMUTABLE | CONCURRENT))
+              | NONNULL;
+    }
+  }
+}
@@ -13,27 +13,25 @@ import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.geom.Rectangle2D;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JSpinner;
 import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
 import org.scijava.vecmath.Point2d;
 import org.scijava.vecmath.Tuple2d;
-import org.scijava.vecmath.Vector2d;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.celldynamics.quimp.PropertyReader;
 import com.github.celldynamics.quimp.ViewUpdater;
-import com.github.celldynamics.quimp.geom.BasicPolygons;
 import com.github.celldynamics.quimp.plugin.IQuimpPluginSynchro;
 import com.github.celldynamics.quimp.plugin.ParamList;
 import com.github.celldynamics.quimp.plugin.QuimpPluginException;
@@ -80,61 +78,67 @@ import com.github.celldynamics.quimp.plugin.utils.QWindowBuilder;
  * <p><H3>Detailed description of algorithm</H3> The algorithm comprises of three main steps:
  * <ol>
  * <li>Preparing <i>rank</i> table of candidates to remove
- * <li>Iterating over <i>rank</i> table to find <i>pnum</i> such candidates who meet rules and store
- * their coordinates in <i>ind2rem</i> array. By candidates it is understood sets of polygon indexes
- * that is covered by window on given position. For simplification those vertexes are identified by
- * lover and upper index of window in outline array (input).
+ * <li>Iterating over <i>rank</i> table to find <i>pnum</i> such candidates who meet rules and mark
+ * their points as removed. By candidates it is understood sets of polygon indexes that is covered
+ * by window on given position.
  * <li>Forming output table without protrusions.
  * </ol>
  * 
  * <p><H2>First step</H2> The window of size <i>window</i> slides over looped data. Looping is
- * performed by java.util.Collections.rotate method that shift data left copying falling out indexes
- * to end of the set (finally the window is settled in constant position between indexes
- * <0;window-1>). For each its position <i>r</i> the candidate points are deleted from original
- * contour and circularity is computed (see {@link #getCircularity(List)}). Then candidate points
- * are passed to {@link #getWeighting(List)} method where weight is evaluated. The role of weight is
- * to promote in <i>rank</i> candidate points that are cumulated in small area over distributed
- * sets. Thus weight should give larger values for that latter distribution than for cumulated one.
+ * performed by modular indexing, the window at position <i>r</i> covers indexes
+ * <r;r+window-1> wrapped to the beginning of the data (see {@link CircularSubList}). Input data are
+ * never modified. For each position <i>r</i> the candidate points are deleted from original
+ * contour and circularity is computed as \f[ circ=\frac{4*\pi*A}{P^2} \f] where \f$A\f$ is
+ * polygon area and \f$P\f$ is its perimeter. Circularities for all positions are obtained in
+ * one pass from running sums of area and perimeter (see {@link SlidingCircularity}). Then
+ * candidate points are passed to {@link HatFilterEngine#getWeighting(List, int)} method where
+ * weight is evaluated. The role of weight is to promote in <i>rank</i> candidate points that are
+ * cumulated in small area over distributed sets. Thus weight should give larger values for that
+ * latter distribution than for cumulated one.
  * Currently weights are calculated as standard deviation of distances of all candidate points to
  * center of mass of these points (or mean point if polygon is invalid). Finally circularity(r) is
  * divided by weight (<i>r</i>) and stored in <i>circ</i> array. Additionally in this step the
- * convex is checked. All candidate points are tested for inclusion in contour without these points.
- * This information is stored in <i>convex</i> array. Finally rank array <i>circ</i> is normalised
- * to maximum element.
+ * convex is checked. All candidate points are tested for inclusion in contour without these points
+ * (see {@link ConvexityIndex}). This information is stored in <i>convex</i> array. By default the
+ * test is postponed to the second step and performed only for windows that are really checked
+ * there (see {@link #setLazyConvexity(boolean)}). Window positions are independent and for large
+ * outlines they are processed in parallel (see {@link #setForkJoinPool(ForkJoinPool)}). Weights
+ * and convexity flags not affected by changes of outline can be also taken from previous frame
+ * (see {@link #setWarmStart(boolean)}). Finally
+ * rank array <i>circ</i> is normalised to maximum element.
  * 
- * <p><H2>Second step</H2> In second step array of ranks <i>circ</i> is sorted in descending order.
- * For
- * every rank in sorted table the real position of window is retrieved (that gave this rank). The
- * window position is defined here by two numbers - lower and upper range of indexes covered
- * by it. The candidate points from this window are validated for criterion:
+ * <p><H2>Second step</H2> In second step window positions are sorted by their ranks <i>circ</i>
+ * in descending order, equal ranks are ordered by position. For every position in this order the
+ * candidate points from window are validated for criterion:
  * <ol>
  * <li><i>rank</i> must be within range <i>alevmin</i> - <i>alevmax</i>
- * <li>lower and upper index of window (index means here number of polygon vertex in array) must not
- * be included in any previously found window. This checking is done by deriving own class
- * WindowIndRange with overwritten {@link WindowIndRange#compareTo(Object)} method that defines
- * rules of equality and non relations between ranges. Basically any overlapping range or included
- * is considered as equal and rejected from storing in <i>ind2rem</i> array.
+ * <li>window must not cover any point covered by previously found windows. Points of found windows
+ * are marked in circular bitmap, so windows wrapped around end of data are checked as other ones.
  * <li>candidate points must be convex. As mentioned before <i>convex</i> means that <b>all</b>
  * candidate points are outside the original contour formed without these points.
  * </ol>
- * If all above criterion are meet the window [lower;upper] is stored in <i>ind2rem</i>. Windows on
- * end of
- * data are wrapped by dividing them for two sub-windows: [w;end] and [0;c] otherwise they may cover
- * the whole range (e.g. <10;3> does not stand for window from 10 wrapped to 3 but window from 3 to
- * 10).
+ * If all above criterion are meet points of window are marked as removed. The first candidate
+ * within acceptance levels is always accepted.
  * 
  * <p>The second step is repeated until pnum object will be found or end of candidates will be
  * reached.
  * 
- * <p><H2>Third step</H2> In third step every point from original contour is tested for including in
- * array <i>ind2rem</i> that contains ranges of indexes to remove. Points on index that is not
- * included in any of ranges stored in <i>ind2rem</i> are copied to output.
+ * <p><H2>Third step</H2> In third step points from original contour that are not marked as
+ * removed are copied to output.
+ * 
+ * <p>Rank table depends only on outline and <i>window</i>. Preview keeps it for the latest
+ * outline, so changing <i>pnum</i>, <i>alevmin</i> or <i>alevmax</i> repeats only second and
+ * third step.
  * 
  * @author p.baniukiewicz
  */
 public class HatSnakeFilter_ extends QWindowBuilder implements IQuimpBOAPoint2dFilter, IPadArray,
         ChangeListener, ActionListener, IQuimpPluginSynchro {
   static final Logger LOGGER = LoggerFactory.getLogger(HatSnakeFilter_.class.getName());
+  /**
+   * Default minimal number of outline points for which rank table is computed in parallel.
+   */
+  public static final int DEFAULT_PARALLEL_THRESHOLD = HatFilterEngine.DEFAULT_PARALLEL_THRESHOLD;
   private final int drawSize = 300; // size of draw area in window
 
   private int window; // filter's window size
@@ -150,6 +154,14 @@ public class HatSnakeFilter_ extends QWindowBuilder implements IQuimpBOAPoint2dF
   private JTextArea logArea;
   private int err; // general counter of log entries
   private ViewUpdater qcontext; // remember QuimP context to recalculate and update its view
+  private boolean lazyConvexity; // evaluate convexity only for windows visited in Step 2
+  private ForkJoinPool pool; // pool used for computing rank table, null for serial computation
+  private int parallelThreshold; // minimal number of outline points for parallel computation
+  private RankCacheSet rankCaches; // data of previous outlines of cells, null if warm start is off
+  private HatFilterMetrics metrics; // statistics of runs, null if not collected
+  private PreviewExecutor preview; // background computation of preview, created on first use
+  private volatile RankTable rankTable; // Step 1 result for the latest preview
+  private HatFilterResultCache resultCache; // cache of results, null if not used
 
   /**
    * Construct HatFilter Input array with data is virtually circularly padded.
@@ -172,6 +184,9 @@ public class HatSnakeFilter_ extends QWindowBuilder implements IQuimpBOAPoint2dF
     uiDefinition.put("alevmin", "spinnerd: 0: 1:5e-6:" + Double.toString(alevmin) + ":6");
     uiDefinition.put("alevmax", "spinnerd: 0: 1:5e-6:" + Double.toString(alevmax) + ":6");
     buildWindow(uiDefinition); // construct ui (not shown yet)
+    lazyConvexity = true;
+    pool = ForkJoinPool.commonPool();
+    parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
     points = null; // not attached yet
     pout = null; // not calculated yet
     err = 1; // first line in log window
@@ -181,7 +196,7 @@ public class HatSnakeFilter_ extends QWindowBuilder implements IQuimpBOAPoint2dF
    * Attach data to process.
    * 
    * <p>Data are as list of vectors defining points of polygon. Passed points should be sorted
-   * according to a clockwise or anti-clockwise direction
+   * according to a clockwise or anti-clockwise direction. Attached list is only read by filter.
    * 
    * @param data Polygon points (can be null)
    */
@@ -207,6 +222,8 @@ public class HatSnakeFilter_ extends QWindowBuilder implements IQuimpBOAPoint2dF
    * other ui element. User can expect that points will be always valid but they optionally may
    * have 0 length.
    * 
+   * <p>Processing is delegated to {@link HatFilterEngine} configured with current parameters.
+   * 
    * @return Processed input list, size of output list may be different than input. Empty output
    *         is also allowed.
    * @see #actionPerformed(ActionEvent)
@@ -217,251 +234,211 @@ public class HatSnakeFilter_ extends QWindowBuilder implements IQuimpBOAPoint2dF
     // internal parameters are not updated here but when user click apply
     LOGGER.debug(String.format("Run plugin with params: window %d, pnum %d, alevmin %f, alevmax %f",
             window, pnum, alevmin, alevmax));
-
-    BasicPolygons bp = new BasicPolygons(); // provides geometry processing
-    // output table for plotting temporary results of filter
-    List<Point2d> out = new ArrayList<Point2d>();
-    // check input conditions
-    if (window % 2 == 0 || window < 0) {
-      throw new QuimpPluginException("Window must be uneven, positive and larger than 0");
-    }
-    if (window >= points.size()) {
-      throw new QuimpPluginException("Processing window to long");
-    }
-    if (window < 3) {
-      throw new QuimpPluginException("Window should be larger than 2");
-    }
-    if (pnum <= 0) {
-      throw new QuimpPluginException("Number of protrusions should be larger than 0");
-    }
-    if (alevmin < 0 || alevmax < 0) {
-      throw new QuimpPluginException("Acceptacne level should be positive");
-    }
-    // temporary variable for keeping window currently tested for containing in ind2rem
-    WindowIndRange indexTest = new WindowIndRange();
-    // Step 1 - Build circularity table
-    // array to store circularity for window positions. Index is related to window position
-    // (negative shift in rotate)
-    ArrayList<Double> circ = new ArrayList<Double>();
-    // store information if points for window at r position are convex compared to shape without
-    // these points
-    ArrayList<Boolean> convex = new ArrayList<Boolean>();
-
-    double tmpCirc;
-    for (int r = 0; r < points.size(); r++) {
-      LOGGER.trace("------- Iter: " + r + "-------");
-      LOGGER.trace("points: " + points.toString());
-      // get all points except window. Window has constant position 0 - (window-1)
-      List<Point2d> pointsnowindow = points.subList(window, points.size());
-      LOGGER.trace("sub: " + pointsnowindow.toString());
-      tmpCirc = getCircularity(pointsnowindow);
-      LOGGER.trace("circ " + tmpCirc);
-      // calculate weighting for circularity
-      List<Point2d> pointswindow = points.subList(0, window); // get points for window only
-      LOGGER.trace("win: " + pointswindow.toString());
-      tmpCirc /= getWeighting(pointswindow); // calculate weighting for window content
-      LOGGER.trace("Wcirc " + tmpCirc);
-      circ.add(tmpCirc); // store weighted circularity for shape without window
-      // check if points of window are convex according to shape without these points
-      convex.add(bp.areAllPointsInside(pointsnowindow, pointswindow)); // true if concave
-      LOGGER.trace("con: " + convex.get(convex.size() - 1));
-      // move window to next position
-      Collections.rotate(points, -1); // rotates by -1 what means that on first n positions
-                                      // of points there are different values simulate window
-                                      // first iter 0 1 2 3 4 5... (w=[0 1 2])
-                                      // second itr 1 2 3 4 5 0... (w=[1 2 3])
-                                      // last itera 5 0 1 2 3 4... (w=[5 0 1])
-
-    }
-    // normalize circularity to 1
-    double maxCirc = Collections.max(circ);
-    for (int r = 0; r < circ.size(); r++) {
-      if (maxCirc != 0.0) {
-        circ.set(r, circ.get(r) / maxCirc);
-      } else {
-        circ.set(r, 0.0);
+    HatFilterEngine engine = createEngine().metrics(metrics).build();
+    HatFilterResultCache cache = resultCache;
+    if (cache != null) {
+      List<Point2d> cached = cache.get(points, engine);
+      if (cached != null) {
+        LOGGER.debug("Result taken from cache");
+        return cached;
       }
     }
-
-    // Step 2 - Check criterion for all windows
-    TreeSet<WindowIndRange> ind2rem = new TreeSet<>(); // <lower;upper> range of indexes to remove
-    // need sorted but the old one as well to identify windows positions
-    ArrayList<Double> circsorted = new ArrayList<>(circ);
-    circsorted.sort(Collections.reverseOrder()); // sort in descending order
-    // TODO circsorted contains all ranks for all positions of window. Remove those that overlap
-    // here. finaly it should hold nonoverlaping candidates only
-    LOGGER.info("cirs: " + circsorted.toString());
-    LOGGER.trace("circ: " + circ.toString());
-
-    if (circsorted.get(0) < alevmin) {
-      return points; // just return non-modified data;
+    // outline is converted once, for selecting cache of cell and for filter
+    Outline outline = rankCaches != null ? new Outline(points) : null;
+    RankCache warm = outline != null
+            ? rankCaches.select(outline, engine.getWindow(), engine.isCrossingDefective())
+            : null;
+    List<Point2d> out =
+            engine.filter(points, outline, msg -> logArea.append("#" + msg + '\n'), warm);
+    if (cache != null) {
+      cache.put(points, engine, out);
     }
+    return out;
+  }
 
-    int found = 0; // how many protrusions we have found already
-    // current index in circsorted - number of window to analyze. Real position of
-    // window on data can be retrieved by finding value from sorted array circularityin non sorted,
-    // where order of data is related to window position starting from 0 for most left point of
-    // window
-    int i = 0;
-    boolean contains; // temporary result of test if current window is included in any prev
-    while (found < pnum) { // do as long as we find pnum protrusions (or to end of candidates)
-      if (i >= circsorted.size()) { // no more data to check, probably we have less prot. pnum
-        logArea.append("#" + "Can find next candidate. Use smaller window or change alev" + '\n');
-        break;
-      }
-      // if ith circularity beyond range
-      if (circsorted.get(i) < alevmin || circsorted.get(i) > alevmax) {
-        i++;
-        continue;
-      } // stop searching because all i+n are smaller as well
-      if (found > 0) {
-
-        // find where it was before sorting and store in window positions
-        int startpos = circ.indexOf(circsorted.get(i));
-        // check if we already have this index in list indexes to remove
-        if (startpos + window - 1 >= points.size()) { // if at end, we must turn to begin
-          indexTest.setRange(startpos, points.size() - 1); // to end
-          contains = ind2rem.contains(indexTest); // beginning of window at the end of dat
-          indexTest.setRange(0, window - (points.size() - startpos) - 1); // turn to start
-          contains &= ind2rem.contains(indexTest); // check rotated part at beginning
-        } else {
-          indexTest.setRange(startpos, startpos + window - 1);
-          contains = ind2rem.contains(indexTest);
-        }
-        // this window doesnt overlap with those ound already and it is convex
-        if (!contains && !convex.get(startpos)) {
-          // store range of indexes that belongs to window
-          if (startpos + window - 1 >= points.size()) { // as prev split to two windows
-            // if we are on the end of data
-            ind2rem.add(new WindowIndRange(startpos, points.size() - 1));
-            // turn window to beginning
-            ind2rem.add(new WindowIndRange(0, window - (points.size() - startpos) - 1));
-          } else {
-            ind2rem.add(new WindowIndRange(startpos, startpos + window - 1));
-          }
-          LOGGER.trace("added win for i=" + i + " startpos=" + startpos + " coord:"
-                  + points.get(startpos).toString());
-          found++;
-          i++;
-        } else { // go to next candidate in sorted circularities
-          i++;
-        }
-      } else { // first candidate always accepted
-        // find where it was before sorting and store in window positions
-        int startpos = circ.indexOf(circsorted.get(i));
-        // store range of indexes that belongs to window
-        if (startpos + window - 1 >= points.size()) { // as prev split to two windows
-          // if we are on the end of data
-          ind2rem.add(new WindowIndRange(startpos, points.size() - 1));
-          // turn window to beginning
-          ind2rem.add(new WindowIndRange(0, window - (points.size() - startpos) - 1));
-        } else {
-          ind2rem.add(new WindowIndRange(startpos, startpos + window - 1));
-        }
-        LOGGER.trace("added win for i=" + i + " startpos=" + startpos + " coord:"
-                + points.get(startpos).toString());
-        i++;
-        found++;
+  /**
+   * Filter outline for preview reusing rank table if only selection parameters have changed.
+   * 
+   * <p>Rank table of the latest previewed outline and window is kept. If it matches <tt>data</tt>
+   * and <tt>window</tt> only Step 2 and Step 3 are performed. Result is taken from cache if
+   * available.
+   * 
+   * @param engine engine configured with current parameters
+   * @param window window of engine
+   * @param data outline to filter
+   * @param log receiver of messages for user
+   * @param cache cache of results, can be <tt>null</tt>
+   * @return Processed input list
+   * @throws QuimpPluginException on wrong parameters
+   * @see HatFilterEngine#rank(List, RankCache)
+   * @see HatFilterEngine#select(RankTable, Consumer)
+   */
+  private List<Point2d> preview(HatFilterEngine engine, int window, List<Point2d> data,
+          Consumer<String> log, HatFilterResultCache cache) throws QuimpPluginException {
+    if (cache != null) {
+      List<Point2d> cached = cache.get(data, engine);
+      if (cached != null) {
+        return cached;
       }
     }
-    LOGGER.trace("winpos: " + ind2rem.toString());
-    // Step 3 - remove selected windows from input data
-    // array will be copied to new one skipping points to remove
-    for (i = 0; i < points.size(); i++) {
-      // set upper and lower index to the same value - allows to test particular index for its
-      // presence in any defined range
-      indexTest.setSame(i);
-      if (!ind2rem.contains(indexTest)) { // check if any window position (lower and upper bound)
-        out.add(new Point2d(points.get(i)));
-      } // include tested point. Copy it to new array if not
+    RankTable table = rankTable;
+    if (table == null || !table.isFor(data, window)) {
+      table = engine.rank(data, null);
+      rankTable = table;
+    } else {
+      LOGGER.debug("Reusing rank table");
+    }
+    List<Point2d> out = engine.select(table, log);
+    if (cache != null) {
+      cache.put(data, engine, out);
     }
     return out;
   }
 
   /**
-   * Calculate circularity of polygon.
+   * Create builder of engine configured with current parameters of plugin.
    * 
-   * <p>Circularity is computed as: \f[ circ=\frac{4*\pi*A}{P^2} \f] where \f$A\f$ is polygon area
-   * and \f$P\f$ is its perimeter
+   * @return new builder
+   */
+  private HatFilterEngine.Builder createEngine() {
+    return HatFilterEngine.builder().window(window).pnum(pnum).alevmin(alevmin).alevmax(alevmax)
+            .lazyConvexity(lazyConvexity).forkJoinPool(pool).parallelThreshold(parallelThreshold);
+  }
+
+  /**
+   * This method should return a flag word that specifies the filters capabilities.
    * 
-   * @param p Polygon vertices
-   * @return circularity
+   * @return Configuration codes
+   * @see com.github.celldynamics.quimp.plugin.IQuimpCorePlugin
    */
-  private double getCircularity(final List<? extends Tuple2d> p) {
-    double area;
-    double perim;
-    BasicPolygons b = new BasicPolygons();
-    area = b.getPolyArea(p);
-    perim = b.getPolyPerim(p);
-
-    return (4 * Math.PI * area) / (perim * perim);
+  @Override
+  public int setup() {
+    LOGGER.trace("Entering setup");
+    return DOES_SNAKES + CHANGE_SIZE;
   }
 
   /**
-   * Calculates weighting based on distribution of window points.
+   * Select when convexity of windows is evaluated.
    * 
-   * <p>Calculates center of mass of window points and then standard deviations of lengths between
-   * this point and every other point. Cumulated distributions like protrusions give smaller
-   * values than elongated ones.
+   * <p>In lazy mode (default) convexity is tested only for windows that are checked in second step
+   * of algorithm, i.e. those which have rank within acceptance levels and do not overlap already
+   * found windows. Results are the same in both modes.
    * 
-   * <p>If input polygon <i>snakePolygon</i> (which is only part of whole cell shape) is defective,
-   * i.e
-   * its
-   * edges cross, the weight is calculated using middle vector defined as mean of coordinates.
+   * @param lazyConvexity true to test convexity on demand, false to test all window positions in
+   *        first step
+   */
+  public void setLazyConvexity(boolean lazyConvexity) {
+    this.lazyConvexity = lazyConvexity;
+  }
+
+  /**
+   * Check if convexity is evaluated on demand.
    * 
-   * @param snakePolygon Polygon vertices
-   * @return Weight
+   * @return true if lazy mode is used
+   * @see #setLazyConvexity(boolean)
    */
-  private double getWeighting(final List<Point2d> p) {
-    double[] len = new double[p.size()];
-    BasicPolygons bp = new BasicPolygons();
-    Vector2d middle;
-    try { // check if input polygon is correct
-      middle = new Vector2d(bp.polygonCenterOfMass(p));
-    } catch (IllegalArgumentException e) { // if not get middle point as mean
-      double mx = 0;
-      double my = 0;
-      for (Point2d v : p) {
-        mx += v.x;
-        my += v.y;
-      }
-      middle = new Vector2d(mx / p.size(), my / p.size());
-    }
-    int i = 0;
-    // get lengths
-    for (Point2d v : p) {
-      Vector2d vec = new Vector2d(middle); // vector between px and middle
-      vec.sub(v);
-      len[i++] = vec.length();
-    }
-    // get mean
-    double mean = 0;
-    for (double d : len) {
-      mean += d;
-    }
-    mean /= p.size();
-    // get std
-    double std = 0;
-    for (double d : len) {
-      std += Math.pow(d - mean, 2.0);
+  public boolean isLazyConvexity() {
+    return lazyConvexity;
+  }
+
+  /**
+   * Enable reusing rank table between consecutive outlines.
+   * 
+   * <p>In this mode plugin remembers rank table data of last processed outlines of up to
+   * {@value RankCacheSet#DEFAULT_MAX_CELLS} cells and next outline is compared against them (see
+   * {@link RankCacheSet}). Only windows that touch changed vertices are recomputed, if outline
+   * changed too much or belongs to new cell the table is rebuilt. Results are the same as without
+   * warm start. Mode is useful when one instance of plugin filters consecutive frames of the same
+   * cells, also when outlines of many cells are filtered alternately. Disabled by default.
+   * 
+   * @param warmStart true to enable warm start, false to disable it and forget previous outlines
+   */
+  public void setWarmStart(boolean warmStart) {
+    if (!warmStart) {
+      rankCaches = null;
+    } else if (rankCaches == null) {
+      rankCaches = new RankCacheSet();
     }
-    std /= points.size();
-    std = Math.sqrt(std);
+  }
 
-    LOGGER.trace("w " + std);
-    return std;
+  /**
+   * Check if rank table is reused between consecutive outlines.
+   * 
+   * @return true if warm start is enabled
+   * @see #setWarmStart(boolean)
+   */
+  public boolean isWarmStart() {
+    return rankCaches != null;
   }
 
   /**
-   * This method should return a flag word that specifies the filters capabilities.
+   * Attach object collecting statistics of filter runs.
    * 
-   * @return Configuration codes
-   * @see com.github.celldynamics.quimp.plugin.IQuimpCorePlugin
+   * <p>Times of algorithm steps and counters of candidates of every subsequent run are added to
+   * given object. The same object can be attached to many filters. Nothing is measured if metrics
+   * are not attached (default).
+   * 
+   * @param metrics object to add statistics to, <tt>null</tt> to stop collecting them
    */
-  @Override
-  public int setup() {
-    LOGGER.trace("Entering setup");
-    return DOES_SNAKES + CHANGE_SIZE;
+  public void setMetrics(HatFilterMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Get object collecting statistics of filter runs.
+   * 
+   * @return attached metrics or <tt>null</tt>
+   * @see #setMetrics(HatFilterMetrics)
+   */
+  public HatFilterMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Attach cache of filter results.
+   * 
+   * <p>Results are stored for content of outline and current parameters. If the same outline is
+   * filtered again with the same parameters, e.g. when BOA pipeline is rerun after Apply, cached
+   * result is returned and filter is not run. The same cache can be attached to many filters.
+   * Results are not cached by default.
+   * 
+   * @param resultCache cache to use, <tt>null</tt> to disable caching
+   */
+  public void setResultCache(HatFilterResultCache resultCache) {
+    this.resultCache = resultCache;
+  }
+
+  /**
+   * Get cache of filter results.
+   * 
+   * @return attached cache or <tt>null</tt>
+   * @see #setResultCache(HatFilterResultCache)
+   */
+  public HatFilterResultCache getResultCache() {
+    return resultCache;
+  }
+
+  /**
+   * Set pool used for computing rank table of large outlines.
+   * 
+   * <p>Rank table (first step of algorithm) is computed in parallel if outline has at least
+   * {@link #setParallelThreshold(int)} points. Output does not depend on pool used.
+   * 
+   * @param pool pool to use, <tt>null</tt> for serial computation. Common pool is used by default.
+   */
+  public void setForkJoinPool(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Set minimal number of outline points for parallel computation of rank table.
+   * 
+   * @param parallelThreshold number of points, smaller outlines are processed serially. Default is
+   *        {@value #DEFAULT_PARALLEL_THRESHOLD}.
+   * @see #setForkJoinPool(ForkJoinPool)
+   */
+  public void setParallelThreshold(int parallelThreshold) {
+    this.parallelThreshold = parallelThreshold;
   }
 
   /**
@@ -598,7 +575,10 @@ public class HatSnakeFilter_ extends QWindowBuilder implements IQuimpBOAPoint2dF
    * than in LoessFilter and MeanFilter where window content was copied while {@link #runPlugin()}
    * command
    * 
-   * <p>This button run plugin and creates preview of filtered data
+   * <p>This button run plugin and creates preview of filtered data. Unlike preview, plugin is run
+   * synchronously on EDT, because BOA expects its view to be updated from EDT. Results of
+   * outlines already previewed are taken from result cache if it is set
+   * ({@link #setResultCache(HatFilterResultCache)}).
    * 
    */
   @Override
@@ -608,6 +588,9 @@ public class HatSnakeFilter_ extends QWindowBuilder implements IQuimpBOAPoint2dF
       // order of these two is important because updateView() externally run the whole
       // plugin and reconnects external data what updates preview and delete any recalculated
       // result.
+      // updateView() is called on EDT on purpose. It recalculates snakes of BOA and repaints its
+      // window, BOA data are not synchronised and are modified by BOA itself only on EDT. It must
+      // also finish before recalculatePlugin() reads outline reconnected by it.
       qcontext.updateView(); // run whole plugin from BOA context
       recalculatePlugin(); // transfers data from ui to plugin and plot example on screen
     }
@@ -616,7 +599,10 @@ public class HatSnakeFilter_ extends QWindowBuilder implements IQuimpBOAPoint2dF
   /**
    * Recalculate plugin on every change of its parameter.
    * 
-   * <p>Used only for previewing. Repaint window as well
+   * <p>Used only for previewing. Filter runs in background (see {@link PreviewExecutor}), rapid
+   * changes of parameters are coalesced and only result for the latest parameters is shown. Window
+   * is repainted when result is ready. Rank table is computed again only if window or outline has
+   * changed.
    */
   private void recalculatePlugin() {
     // check if we have correct data
@@ -631,20 +617,30 @@ public class HatSnakeFilter_ extends QWindowBuilder implements IQuimpBOAPoint2dF
     alevmax = getDoubleFromUI("alevmax");
     LOGGER.debug(String.format("Updated from UI: window %d, pnum %d, alevmin %f, alevmax %f",
             window, pnum, alevmin, alevmax));
-    // run plugin for set parameters
-    try {
-      out = runPlugin(); // may throw if no data attached this is inly to get preview
+    // run plugin for set parameters, data can be replaced on EDT while filter is running
+    HatFilterEngine engine = createEngine().build();
+    int w = window;
+    List<Point2d> data = points;
+    HatFilterResultCache cache = resultCache;
+    ExPolygon reference = snakePolygon;
+    if (preview == null) {
+      preview = new PreviewExecutor();
+    }
+    Consumer<String> log =
+            msg -> SwingUtilities.invokeLater(() -> logArea.append("#" + msg + '\n'));
+    preview.submit(() -> preview(engine, w, data, log, cache), result -> {
+      out = result;
       pout = new ExPolygon(out); // create new figure from out data
       // fit to size from original polygon,
-      pout.fitPolygon(drawSize, snakePolygon.initbounds, snakePolygon.scale);
+      pout.fitPolygon(drawSize, reference.initbounds, reference.scale);
       // modified one will be centered to
       // original one
       dp.repaint(); // repaint window
-    } catch (QuimpPluginException e1) { // ignore exception in general
+    }, e1 -> { // ignore exception in general
       LOGGER.error(e1.toString());
       logArea.append("#" + err + ": " + e1.getMessage() + '\n');
       err++;
-    }
+    });
   }
 
   /**
@@ -730,6 +726,15 @@ public class HatSnakeFilter_ extends QWindowBuilder implements IQuimpBOAPoint2dF
       }
       super.windowActivated(e);
     }
+
+    @Override
+    public void windowClosing(WindowEvent e) {
+      if (preview != null) { // stop background thread, it is created again on next preview
+        preview.shutdown();
+        preview = null;
+      }
+      super.windowClosing(e);
+    }
   }
 
   /**
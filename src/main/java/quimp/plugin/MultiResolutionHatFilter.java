@@ -0,0 +1,227 @@
+package quimp.plugin;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.scijava.vecmath.Point2d;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.celldynamics.quimp.plugin.QuimpPluginException;
+
+/**
+ * HatFilter for dense outlines searching protrusions from coarse to fine resolution.
+ *
+ * <p>Outline is resampled at equal arc-length intervals to about <i>N/step</i> vertices and rank
+ * table of resampled outline is computed for window scaled by the same factor. Every coarse
+ * vertex remembers the nearest vertex of original outline. Windows of the best ranked coarse
+ * positions (<i>candidates*pnum</i> of them) are mapped back to ranges of original vertices and
+ * extended by <i>step</i> vertices on both sides. Then only full resolution windows overlapping
+ * these ranges are ranked and selected by {@link HatFilterEngine}, therefore removed vertices are
+ * always vertices of original outline and weightings of most windows are never computed.
+ *
+ * <p>Relation to exact mode ({@link HatFilterEngine#filter(List)}):
+ * <ul>
+ * <li>every removed window is checked at full resolution with the same criteria as in exact mode -
+ * window rank, convexity and overlapping with other windows,
+ * <li>all full resolution windows overlapping any of refined coarse windows are evaluated, so
+ * protrusion found at coarse resolution is never lost by mapping,
+ * <li>ranks are normalised to maximum of evaluated windows, the window of maximal rank of whole
+ * outline may be not evaluated. This does not change selection for default acceptance levels 0
+ * and 1, which accept every rank. Other levels are relative to maximal rank of whole outline, so
+ * then all windows are evaluated (exact mode) and levels keep their meaning,
+ * <li>result is identical to exact mode if all windows removed by exact mode are evaluated. This
+ * holds always for <i>step</i> equal 1, for acceptance levels other than 0 and 1, when refined
+ * ranges cover whole outline and when outline is too short for resampling.
+ * </ul>
+ *
+ * <p>Windows removed by exact mode are missed if their coarse counterparts are not among
+ * <i>candidates*pnum</i> best coarse windows. Coarse ranks are computed on smoothed outline, so
+ * this happens mainly on noisy outlines, where fine resolution ranks are dominated by noise. For
+ * noisy outlines of 1000-5000 vertices spaced by 1 pixel with protrusions (as in benchmarks),
+ * windows 21-61, steps 4 and 8 and <i>pnum</i> 1-6 the fraction of vertices removed by exact mode
+ * that are removed also by this filter and the fraction of evaluated windows were:
+ * <ul>
+ * <li><i>candidates</i> 1 - 50% of vertices, 8% of windows,
+ * <li><i>candidates</i> 2 - 63% of vertices, 12% of windows,
+ * <li><i>candidates</i> 4 - 81% of vertices, 17% of windows,
+ * <li><i>candidates</i> 8 - 94% of vertices, 24% of windows,
+ * <li><i>candidates</i> 16 (default) - 98% of vertices, 35% of windows.
+ * </ul>
+ * Result was identical to exact mode in 9%, 23%, 50%, 75% and 90% of cases respectively. For
+ * smooth outlines, like test outline <tt>testData_prot</tt> with 3 vertices inserted on every
+ * edge, 4 candidates give the same result as exact mode. Runs that evaluated only part of windows
+ * are counted by {@link HatFilterMetrics#getApproximateRuns()} of metrics attached to engine.
+ *
+ * <p>Example:
+ *
+ * <pre>
+ * <code>
+ * HatFilterEngine engine = HatFilterEngine.builder().window(41).pnum(2).build();
+ * List&lt;Point2d&gt; filtered = new MultiResolutionHatFilter(engine, 8).filter(outline);
+ * </code>
+ * </pre>
+ *
+ * @author p.baniukiewicz
+ */
+public class MultiResolutionHatFilter {
+  static final Logger LOGGER = LoggerFactory.getLogger(MultiResolutionHatFilter.class.getName());
+  /**
+   * Default number of refined coarse windows per protrusion.
+   */
+  static final int DEFAULT_CANDIDATES = 16;
+  private final HatFilterEngine engine; // filter of full resolution outline
+  private final int step; // number of original vertices per coarse vertex
+  private int candidates = DEFAULT_CANDIDATES; // refined coarse windows per protrusion
+
+  /**
+   * Create filter.
+   *
+   * @param engine filter with parameters of full resolution outline
+   * @param step decimation factor, number of original vertices per vertex of coarse outline. 1
+   *        for exact mode
+   * @throws QuimpPluginException if step is smaller than 1
+   */
+  public MultiResolutionHatFilter(HatFilterEngine engine, int step) throws QuimpPluginException {
+    if (step < 1) {
+      throw new QuimpPluginException("Decimation step should be larger than 0");
+    }
+    this.engine = engine;
+    this.step = step;
+  }
+
+  /**
+   * Set number of coarse windows refined at full resolution per protrusion.
+   *
+   * <p>Larger values make result closer to exact mode, see class description for typical error.
+   *
+   * @param candidates number of windows, default {@value #DEFAULT_CANDIDATES}
+   * @throws QuimpPluginException if number is smaller than 1
+   */
+  public void setCandidates(int candidates) throws QuimpPluginException {
+    if (candidates < 1) {
+      throw new QuimpPluginException("Number of candidates should be larger than 0");
+    }
+    this.candidates = candidates;
+  }
+
+  /**
+   * Get number of coarse windows refined per protrusion.
+   *
+   * @return number of windows
+   */
+  public int getCandidates() {
+    return candidates;
+  }
+
+  /**
+   * Get decimation factor.
+   *
+   * @return number of original vertices per vertex of coarse outline
+   */
+  public int getStep() {
+    return step;
+  }
+
+  /**
+   * Remove protrusions from outline.
+   *
+   * @param points outline to process, not modified
+   * @return Processed input list, size of output list may be different than input. Empty output
+   *         is also allowed.
+   * @throws QuimpPluginException on wrong parameters
+   */
+  public List<Point2d> filter(List<Point2d> points) throws QuimpPluginException {
+    Outline outline = new Outline(points);
+    Outline ret = engine.filter(outline, refine(outline));
+    return ret == outline ? points : ret.toList();
+  }
+
+  /**
+   * Find window positions evaluated at full resolution.
+   *
+   * <p>All positions are evaluated for acceptance levels other than 0 and 1.
+   *
+   * @param outline outline to process
+   * @return positions of windows of original outline, <tt>null</tt> for all positions
+   * @throws QuimpPluginException on wrong parameters
+   */
+  BitSet refine(Outline outline) throws QuimpPluginException {
+    if (engine.getAlevmin() > 0 || engine.getAlevmax() < 1) {
+      LOGGER.debug("Acceptance levels relative to maximal rank of outline, all windows evaluated");
+      return null;
+    }
+    int n = outline.size();
+    int window = engine.getWindow();
+    int m = n / step; // size of coarse outline
+    int coarseWindow = Math.max(3, (window / step) | 1);
+    if (step == 1 || m <= coarseWindow + 2) {
+      return null; // too short for resampling
+    }
+    int[] source = new int[m];
+    Outline coarse = resample(outline, m, source);
+    if (coarse == null) {
+      return null;
+    }
+    RankTable table = engine.toBuilder().window(coarseWindow).pnum(1).alevmin(0).alevmax(1)
+            .metrics(null).build().rank(coarse.asList(), null);
+    int[] order = table.getOrder();
+    int count = (int) Math.min(m, (long) candidates * engine.getPnum());
+    BitSet positions = new BitSet(n);
+    for (int k = 0; k < count; k++) {
+      int c = order[k];
+      int first = source[c];
+      int last = source[(c + coarseWindow - 1) % m];
+      // windows overlapping range first-step..last+step of original vertices
+      int from = first - step - window + 1;
+      int len = (last - first + n) % n + 2 * step + window;
+      if (len >= n) {
+        return null;
+      }
+      for (int i = 0; i < len; i++) {
+        positions.set(Math.floorMod(from + i, n));
+      }
+    }
+    LOGGER.debug("Refined " + positions.cardinality() + " of " + n + " windows");
+    return positions.cardinality() == n ? null : positions;
+  }
+
+  /**
+   * Resample closed outline at equal arc-length intervals.
+   *
+   * @param outline outline to resample
+   * @param m number of vertices of resampled outline
+   * @param source output, index of original vertex nearest to every resampled vertex
+   * @return resampled outline or <tt>null</tt> if outline has zero length
+   */
+  static Outline resample(Outline outline, int m, int[] source) {
+    int n = outline.size();
+    double[] cum = new double[n + 1]; // length of outline up to vertex i
+    for (int i = 0; i < n; i++) {
+      int j = (i + 1) % n;
+      double dx = outline.x[j] - outline.x[i];
+      double dy = outline.y[j] - outline.y[i];
+      cum[i + 1] = cum[i] + Math.sqrt(dx * dx + dy * dy);
+    }
+    double total = cum[n];
+    if (total == 0) {
+      return null;
+    }
+    double[] x = new double[m];
+    double[] y = new double[m];
+    int e = 0; // current edge
+    for (int k = 0; k < m; k++) {
+      double s = k * total / m;
+      while (e < n - 1 && cum[e + 1] <= s) {
+        e++;
+      }
+      int j = (e + 1) % n;
+      double len = cum[e + 1] - cum[e];
+      double t = len > 0 ? (s - cum[e]) / len : 0;
+      x[k] = outline.x[e] + t * (outline.x[j] - outline.x[e]);
+      y[k] = outline.y[e] + t * (outline.y[j] - outline.y[e]);
+      source[k] = t < 0.5 ? e : j;
+    }
+    return new Outline(x, y);
+  }
+}
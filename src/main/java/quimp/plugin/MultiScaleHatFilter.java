@@ -0,0 +1,278 @@
+package quimp.plugin;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.scijava.vecmath.Point2d;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.celldynamics.quimp.plugin.QuimpPluginException;
+
+/**
+ * HatFilter working on several window sizes at once.
+ *
+ * <p>Rank and convexity tables are computed for all window sizes in one pass over outline. Parts of
+ * Step 1 that do not depend on window size - primitive copy of outline, prefix sums of area and
+ * perimeter ({@link SlidingCircularity}) and index of edges ({@link ConvexityIndex}) - are built
+ * once and shared by all scales. Only weightings of windows are computed separately for every
+ * size. Ranks for given window size are exactly the same as computed by {@link HatSnakeFilter_}.
+ *
+ * <p>Tables can be used for exploring parameters, e.g. for sweeping window size over all odd
+ * values, or for removing protrusions at several scales ({@link RankTables#select(int, double,
+ * double)}).
+ *
+ * <p>Example:
+ *
+ * <pre>
+ * <code>
+ * MultiScaleHatFilter msf = new MultiScaleHatFilter(5, 15, 31);
+ * MultiScaleHatFilter.RankTables tables = msf.compute(outline);
+ * double[] ranks = tables.getRanks(15);
+ * List&lt;Point2d&gt; filtered = tables.select(1, 0.0, 1.0);
+ * </code>
+ * </pre>
+ *
+ * @author p.baniukiewicz
+ */
+public class MultiScaleHatFilter {
+  static final Logger LOGGER = LoggerFactory.getLogger(MultiScaleHatFilter.class.getName());
+  private final int[] windows; // window sizes in descending order
+  private boolean lazyConvexity; // evaluate convexity only for windows visited in selection
+  private ForkJoinPool pool; // pool used for computing rank tables, null for serial computation
+
+  /**
+   * Create filter for given window sizes.
+   *
+   * @param windows sizes of windows, every must be uneven and larger than 2. Duplicates are ignored
+   * @throws QuimpPluginException on wrong window size
+   */
+  public MultiScaleHatFilter(int... windows) throws QuimpPluginException {
+    if (windows.length == 0) {
+      throw new QuimpPluginException("At least one window size is required");
+    }
+    for (int w : windows) {
+      if (w % 2 == 0 || w < 0) {
+        throw new QuimpPluginException("Window must be uneven, positive and larger than 0");
+      }
+      if (w < 3) {
+        throw new QuimpPluginException("Window should be larger than 2");
+      }
+    }
+    int[] sorted = Arrays.stream(windows).distinct().sorted().toArray();
+    this.windows = new int[sorted.length];
+    for (int i = 0; i < sorted.length; i++) {
+      this.windows[i] = sorted[sorted.length - 1 - i];
+    }
+    lazyConvexity = true;
+    pool = ForkJoinPool.commonPool();
+  }
+
+  /**
+   * Select when convexity of windows is evaluated.
+   *
+   * @param lazyConvexity true to test convexity on demand
+   * @see HatSnakeFilter_#setLazyConvexity(boolean)
+   */
+  public void setLazyConvexity(boolean lazyConvexity) {
+    this.lazyConvexity = lazyConvexity;
+  }
+
+  /**
+   * Set pool used for computing rank tables of large outlines.
+   *
+   * @param pool pool to use, <tt>null</tt> for serial computation
+   * @see HatSnakeFilter_#setForkJoinPool(ForkJoinPool)
+   */
+  public void setForkJoinPool(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Get window sizes processed by this filter.
+   *
+   * @return window sizes in descending order
+   */
+  public int[] getWindows() {
+    return windows.clone();
+  }
+
+  /**
+   * Compute rank and convexity tables for all window sizes.
+   *
+   * @param points outline to process, not modified
+   * @return tables for all window sizes
+   * @throws QuimpPluginException if any window is not shorter than outline
+   */
+  public RankTables compute(List<Point2d> points) throws QuimpPluginException {
+    if (windows[0] >= points.size()) {
+      throw new QuimpPluginException("Processing window to long");
+    }
+    Outline outline = new Outline(points);
+    // structures common for all scales
+    SlidingCircularity sliding = new SlidingCircularity(outline);
+    ConvexityIndex index = new ConvexityIndex(outline);
+    double[][] ranks = new double[windows.length][];
+    ConvexityTable[] convex = new ConvexityTable[windows.length];
+    for (int k = 0; k < windows.length; k++) {
+      // only window, pool and convexity mode are used for computing rank table
+      HatFilterEngine engine = HatFilterEngine.builder().window(windows[k])
+              .lazyConvexity(lazyConvexity).forkJoinPool(pool).build();
+      convex[k] = new ConvexityTable(index, windows[k]);
+      ranks[k] = engine.computeRankTable(outline, sliding, convex[k],
+              new double[outline.size()], null, null);
+      HatFilterEngine.checkInterrupted();
+    }
+    return new RankTables(outline, windows, ranks, convex);
+  }
+
+  /**
+   * Remove protrusions of all scales from outline.
+   *
+   * @param points outline to process, not modified
+   * @param pnum number of protrusions to remove for every window size
+   * @param alevmin minimal acceptance level
+   * @param alevmax maximal acceptance level
+   * @return Processed input list
+   * @throws QuimpPluginException on wrong parameters
+   * @see RankTables#select(int, double, double)
+   */
+  public List<Point2d> filter(List<Point2d> points, int pnum, double alevmin, double alevmax)
+          throws QuimpPluginException {
+    return compute(points).select(pnum, alevmin, alevmax);
+  }
+
+  /**
+   * Rank and convexity tables of one outline for several window sizes.
+   *
+   * <p>Convexity flags are evaluated on first request if lazy mode was selected, therefore tables
+   * should not be used by many threads at once.
+   *
+   * @author p.baniukiewicz
+   */
+  public static class RankTables {
+    private final Outline outline;
+    private final int[] windows; // window sizes in descending order
+    private final double[][] ranks; // normalised ranks for every window size
+    private final ConvexityTable[] convex; // convexity flags for every window size
+    private final int[][] order; // positions sorted by rank, evaluated on first selection
+
+    private RankTables(Outline outline, int[] windows, double[][] ranks,
+            ConvexityTable[] convex) {
+      this.outline = outline;
+      this.windows = windows;
+      this.ranks = ranks;
+      this.convex = convex;
+      order = new int[windows.length][];
+    }
+
+    /**
+     * Get number of outline points.
+     *
+     * @return number of points, also length of rank tables
+     */
+    public int size() {
+      return outline.size();
+    }
+
+    /**
+     * Get window sizes.
+     *
+     * @return window sizes in descending order
+     */
+    public int[] getWindows() {
+      return windows.clone();
+    }
+
+    /**
+     * Get rank table for window size.
+     *
+     * @param window size of window
+     * @return ranks normalised to maximum, index is related to first point covered by window
+     */
+    public double[] getRanks(int window) {
+      return ranks[indexOf(window)].clone();
+    }
+
+    /**
+     * Check if window is concave.
+     *
+     * @param window size of window
+     * @param r position of window
+     * @return true if all window points are inside outline without them
+     * @see ConvexityIndex#areAllPointsInside(int, int)
+     */
+    public boolean isConcave(int window, int r) {
+      return convex[indexOf(window)].get(r);
+    }
+
+    /**
+     * Remove protrusions at all scales.
+     *
+     * <p>Scales are processed from the largest window. For every scale up to <tt>pnum</tt>
+     * windows are selected as in Step 2 of {@link HatSnakeFilter_}, but windows of all scales
+     * must not overlap. Therefore small protrusions are found only outside large ones already
+     * removed. Convexity of all windows is related to input outline. The first candidate within
+     * acceptance levels is always accepted. For one window size result is the same as for
+     * {@link HatSnakeFilter_}.
+     *
+     * <p>Tables are not modified so selection can be repeated with other parameters.
+     *
+     * @param pnum number of protrusions to remove for every window size
+     * @param alevmin minimal acceptance level
+     * @param alevmax maximal acceptance level
+     * @return outline without selected windows
+     * @throws QuimpPluginException on wrong parameters
+     */
+    public List<Point2d> select(int pnum, double alevmin, double alevmax)
+            throws QuimpPluginException {
+      if (pnum <= 0) {
+        throw new QuimpPluginException("Number of protrusions should be larger than 0");
+      }
+      if (alevmin < 0 || alevmax < 0) {
+        throw new QuimpPluginException("Acceptacne level should be positive");
+      }
+      int n = outline.size();
+      BitSet removed = new BitSet(n);
+      int found = 0; // protrusions found at all scales
+      for (int k = 0; k < windows.length; k++) {
+        if (order[k] == null) {
+          order[k] = HatFilterEngine.argsortDescending(ranks[k]);
+        }
+        int window = windows[k];
+        int foundScale = 0; // protrusions found at this scale
+        for (int i = 0; i < n && foundScale < pnum; i++) {
+          int startpos = order[k][i];
+          double rank = ranks[k][startpos];
+          if (rank < alevmin || rank > alevmax) {
+            continue;
+          }
+          if (found > 0) { // first candidate always accepted
+            if (HatFilterEngine.isOccupied(removed, n, startpos, window)) {
+              continue;
+            }
+            if (convex[k].get(startpos)) {
+              continue;
+            }
+          }
+          HatFilterEngine.occupy(removed, n, startpos, window);
+          found++;
+          foundScale++;
+        }
+        LOGGER.debug("Window " + window + " found " + foundScale + " protrusions");
+      }
+      return outline.toList(removed);
+    }
+
+    private int indexOf(int window) {
+      for (int k = 0; k < windows.length; k++) {
+        if (windows[k] == window) {
+          return k;
+        }
+      }
+      throw new IllegalArgumentException("No table for window " + window);
+    }
+  }
+}
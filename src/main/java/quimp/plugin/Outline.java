@@ -0,0 +1,180 @@
+package quimp.plugin;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.scijava.vecmath.Point2d;
+import org.scijava.vecmath.Tuple2d;
+
+/**
+ * Outline stored as structure of arrays.
+ *
+ * <p>Coordinates of vertices are kept in two primitive arrays instead of list of
+ * {@link Point2d} objects. Filter core operates on this representation, List API of QuimP is
+ * supported by copying data once on input ({@link #Outline(List)}) and once on output
+ * ({@link #toList()}).
+ *
+ * @author p.baniukiewicz
+ */
+class Outline {
+  /**
+   * x coordinates of vertices.
+   */
+  final double[] x;
+  /**
+   * y coordinates of vertices.
+   */
+  final double[] y;
+
+  /**
+   * Copy outline from list of points.
+   *
+   * @param p outline vertices, not modified
+   */
+  Outline(final List<? extends Tuple2d> p) {
+    int n = p.size();
+    x = new double[n];
+    y = new double[n];
+    int i = 0;
+    for (Tuple2d v : p) {
+      x[i] = v.getX();
+      y[i] = v.getY();
+      i++;
+    }
+  }
+
+  /**
+   * Wrap coordinates arrays. Arrays are not copied.
+   *
+   * @param x x coordinates of vertices
+   * @param y y coordinates of vertices, must have the same length as x
+   */
+  Outline(double[] x, double[] y) {
+    if (x.length != y.length) {
+      throw new IllegalArgumentException("Coordinate arrays must have the same length");
+    }
+    this.x = x;
+    this.y = y;
+  }
+
+  /**
+   * Number of vertices.
+   *
+   * @return number of vertices
+   */
+  int size() {
+    return x.length;
+  }
+
+  /**
+   * Get vertex as new point.
+   *
+   * @param i index of vertex
+   * @return copy of vertex
+   */
+  Point2d getPoint(int i) {
+    return new Point2d(x[i], y[i]);
+  }
+
+  /**
+   * Convert outline to list of points.
+   *
+   * @return new list with copies of all vertices
+   */
+  List<Point2d> toList() {
+    List<Point2d> ret = new ArrayList<>(size());
+    for (int i = 0; i < size(); i++) {
+      ret.add(new Point2d(x[i], y[i]));
+    }
+    return ret;
+  }
+
+  /**
+   * Convert outline to list of points skipping marked vertices.
+   *
+   * <p>Kept vertices are copied run by run between marked ones, list is allocated with its final
+   * size.
+   *
+   * @param removed vertices to skip, bits beyond outline size are ignored
+   * @return new list with copies of vertices that are not marked
+   */
+  List<Point2d> toList(BitSet removed) {
+    int n = size();
+    int count = n - removed.get(0, n).cardinality();
+    List<Point2d> ret = new ArrayList<>(count);
+    int start = removed.nextClearBit(0); // first vertex of run of kept vertices
+    while (start < n) {
+      int end = removed.nextSetBit(start); // first vertex after run
+      if (end < 0 || end > n) {
+        end = n;
+      }
+      for (int i = start; i < end; i++) {
+        ret.add(new Point2d(x[i], y[i]));
+      }
+      start = removed.nextClearBit(end);
+    }
+    return ret;
+  }
+
+  /**
+   * Copy outline skipping marked vertices.
+   *
+   * @param removed vertices to skip, bits beyond outline size are ignored
+   * @return new outline with vertices that are not marked
+   */
+  Outline remove(BitSet removed) {
+    int n = size();
+    int count = n - removed.get(0, n).cardinality();
+    double[] rx = new double[count];
+    double[] ry = new double[count];
+    int k = 0;
+    int start = removed.nextClearBit(0); // first vertex of run of kept vertices
+    while (start < n) {
+      int end = removed.nextSetBit(start); // first vertex after run
+      if (end < 0 || end > n) {
+        end = n;
+      }
+      System.arraycopy(x, start, rx, k, end - start);
+      System.arraycopy(y, start, ry, k, end - start);
+      k += end - start;
+      start = removed.nextClearBit(end);
+    }
+    return new Outline(rx, ry);
+  }
+
+  /**
+   * Get read-only view of outline as list of points.
+   *
+   * <p>Points are created on every access, changing them does not modify outline.
+   *
+   * @return list view
+   */
+  List<Point2d> asList() {
+    return new PointView();
+  }
+
+  @Override
+  public String toString() {
+    return toList().toString();
+  }
+
+  /**
+   * List of points backed by coordinate arrays.
+   *
+   * @author p.baniukiewicz
+   */
+  private class PointView extends AbstractList<Point2d> implements RandomAccess {
+    @Override
+    public Point2d get(int index) {
+      return new Point2d(x[index], y[index]);
+    }
+
+    @Override
+    public int size() {
+      return x.length;
+    }
+  }
+}
@@ -0,0 +1,279 @@
+package quimp.plugin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.scijava.vecmath.Point2d;
+
+/**
+ * Reader of binary container of many outlines.
+ *
+ * <p>Layout of file, all numbers are little endian:
+ *
+ * <pre>
+ * offset  size      content
+ * 0       4         magic number {@value #MAGIC}
+ * 4       4         format version, {@value #VERSION}
+ * 8       4         bytes per coordinate, 8 for double or 4 for float
+ * 12      4         number of outlines <i>N</i>
+ * 16      16*N      index, for every outline: offset of its data (8 bytes), number of vertices
+ *                   (4 bytes) and 4 reserved bytes
+ * ...               data of outlines, for every outline all x coordinates followed by all y
+ *                   coordinates
+ * </pre>
+ *
+ * <p>File is memory-mapped, so outlines are read on demand by operating system without copying
+ * them to heap. Coordinates of outline can be accessed directly as buffer view of mapped file
+ * ({@link #getCoordinates(int)}), filter core copies them in bulk to primitive arrays. Large files
+ * are mapped in segments not longer than {@value #MAX_SEGMENT} bytes. Reader can be used by many
+ * threads at once. Files are written by {@link OutlineArchiveWriter}.
+ *
+ * @author p.baniukiewicz
+ */
+public class OutlineArchive implements Closeable {
+  /**
+   * Magic number of file, bytes <tt>HATO</tt>.
+   */
+  static final int MAGIC = 0x4F544148;
+  /**
+   * Version of format.
+   */
+  static final int VERSION = 1;
+  /**
+   * Size of header without index.
+   */
+  static final int HEADER_SIZE = 16;
+  /**
+   * Size of index entry.
+   */
+  static final int INDEX_ENTRY_SIZE = 16;
+  /**
+   * Maximal size of mapped segment.
+   */
+  static final long MAX_SEGMENT = 1L << 30;
+
+  /**
+   * Precision of stored coordinates.
+   *
+   * @author p.baniukiewicz
+   */
+  public enum Precision {
+    /**
+     * 8 byte double values.
+     */
+    DOUBLE(8),
+    /**
+     * 4 byte float values.
+     */
+    FLOAT(4);
+
+    final int bytes;
+
+    Precision(int bytes) {
+      this.bytes = bytes;
+    }
+
+    static Precision of(int bytes) throws IOException {
+      for (Precision p : values()) {
+        if (p.bytes == bytes) {
+          return p;
+        }
+      }
+      throw new IOException("Unknown precision: " + bytes);
+    }
+  }
+
+  private final FileChannel channel;
+  private final Precision precision;
+  private final int[] points; // number of vertices of outlines
+  private final int[] segment; // segment of outline
+  private final int[] position; // position of outline data in its segment
+  private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+  /**
+   * Open file and map its content.
+   *
+   * @param file file to read
+   * @throws IOException on read error or wrong format of file
+   */
+  public OutlineArchive(Path file) throws IOException {
+    channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      long size = channel.size();
+      if (size < HEADER_SIZE) {
+        throw new IOException("File too short: " + file);
+      }
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+              .order(ByteOrder.LITTLE_ENDIAN);
+      if (header.getInt(0) != MAGIC) {
+        throw new IOException("Not an outline archive: " + file);
+      }
+      if (header.getInt(4) != VERSION) {
+        throw new IOException("Unsupported version " + header.getInt(4) + ": " + file);
+      }
+      precision = Precision.of(header.getInt(8));
+      int count = header.getInt(12);
+      long indexEnd = HEADER_SIZE + (long) INDEX_ENTRY_SIZE * count;
+      if (count < 0 || indexEnd > size) {
+        throw new IOException("Wrong number of outlines " + count + ": " + file);
+      }
+      ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE,
+              indexEnd - HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      points = new int[count];
+      segment = new int[count];
+      position = new int[count];
+      long[] offsets = new long[count];
+      long segStart = 0; // current segment
+      long segEnd = -1; // end of current segment, exclusive, -1 if there is no segment
+      List<long[]> ranges = new ArrayList<>();
+      for (int i = 0; i < count; i++) {
+        offsets[i] = index.getLong(i * INDEX_ENTRY_SIZE);
+        points[i] = index.getInt(i * INDEX_ENTRY_SIZE + 8);
+        long len = 2L * points[i] * precision.bytes;
+        if (points[i] < 0 || offsets[i] < indexEnd || offsets[i] + len > size
+                || len > MAX_SEGMENT) {
+          throw new IOException("Wrong index entry " + i + ": " + file);
+        }
+        // outlines are added to current segment if it stays not longer than limit
+        if (segEnd < 0 || offsets[i] < segStart || offsets[i] + len - segStart > MAX_SEGMENT) {
+          if (segEnd >= 0) {
+            ranges.add(new long[] { segStart, segEnd });
+          }
+          segStart = offsets[i];
+          segEnd = offsets[i] + len;
+        } else {
+          segEnd = Math.max(segEnd, offsets[i] + len);
+        }
+        segment[i] = ranges.size();
+        position[i] = (int) (offsets[i] - segStart);
+      }
+      if (segEnd >= 0) {
+        ranges.add(new long[] { segStart, segEnd });
+      }
+      for (long[] r : ranges) {
+        segments.add(channel.map(FileChannel.MapMode.READ_ONLY, r[0], r[1] - r[0]));
+      }
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Get number of outlines.
+   *
+   * @return number of outlines in file
+   */
+  public int size() {
+    return points.length;
+  }
+
+  /**
+   * Get precision of coordinates.
+   *
+   * @return precision of file
+   */
+  public Precision getPrecision() {
+    return precision;
+  }
+
+  /**
+   * Get number of vertices of outline.
+   *
+   * @param i index of outline
+   * @return number of vertices
+   */
+  public int getPoints(int i) {
+    return points[i];
+  }
+
+  /**
+   * Get coordinates of outline stored with double precision.
+   *
+   * @param i index of outline
+   * @return read-only view of mapped file, all x coordinates followed by all y coordinates
+   * @throws IllegalStateException if file stores floats
+   */
+  public DoubleBuffer getCoordinates(int i) {
+    if (precision != Precision.DOUBLE) {
+      throw new IllegalStateException("File stores float coordinates");
+    }
+    return slice(i).asDoubleBuffer();
+  }
+
+  /**
+   * Get coordinates of outline stored with float precision.
+   *
+   * @param i index of outline
+   * @return read-only view of mapped file, all x coordinates followed by all y coordinates
+   * @throws IllegalStateException if file stores doubles
+   */
+  public FloatBuffer getFloatCoordinates(int i) {
+    if (precision != Precision.FLOAT) {
+      throw new IllegalStateException("File stores double coordinates");
+    }
+    return slice(i).asFloatBuffer();
+  }
+
+  /**
+   * Get outline as list of points.
+   *
+   * @param i index of outline
+   * @return new list of vertices
+   */
+  public List<Point2d> get(int i) {
+    return getOutline(i).toList();
+  }
+
+  /**
+   * Copy outline to primitive arrays used by filter core.
+   *
+   * @param i index of outline
+   * @return outline
+   */
+  Outline getOutline(int i) {
+    int n = points[i];
+    double[] x = new double[n];
+    double[] y = new double[n];
+    if (precision == Precision.DOUBLE) {
+      DoubleBuffer b = getCoordinates(i);
+      b.get(x);
+      b.get(y);
+    } else {
+      FloatBuffer b = getFloatCoordinates(i);
+      for (int k = 0; k < n; k++) {
+        x[k] = b.get(k);
+        y[k] = b.get(n + k);
+      }
+    }
+    return new Outline(x, y);
+  }
+
+  /**
+   * Close file. Mapped memory is released when buffers are garbage collected.
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Buffer with data of outline, independent of other threads.
+   */
+  private ByteBuffer slice(int i) {
+    ByteBuffer b = segments.get(segment[i]).duplicate();
+    b.position(position[i]);
+    b.limit(position[i] + 2 * points[i] * precision.bytes);
+    return b.slice().order(ByteOrder.LITTLE_ENDIAN);
+  }
+}
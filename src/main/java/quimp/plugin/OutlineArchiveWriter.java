@@ -0,0 +1,211 @@
+package quimp.plugin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.scijava.vecmath.Point2d;
+
+/**
+ * Writer of binary container of many outlines.
+ *
+ * <p>Format is described in {@link OutlineArchive}. Number of outlines must be known when file is
+ * created, because index is placed before data. Outlines are written sequentially, index and
+ * header are written on {@link #close()}. If fewer outlines than declared have been written, only
+ * these are stored in index.
+ *
+ * <p>If maximal sizes of outlines are known when file is created, space for every outline can be
+ * reserved ({@link #OutlineArchiveWriter(Path, int[], OutlineArchive.Precision)}). Outlines are
+ * then written to their slots in any order, also by many threads at once.
+ *
+ * @author p.baniukiewicz
+ */
+public class OutlineArchiveWriter implements Closeable {
+  private final FileChannel channel;
+  private final OutlineArchive.Precision precision;
+  private final ByteBuffer index; // index of file, written on close
+  private final int capacity; // declared number of outlines
+  private final int[] reserved; // maximal sizes of outlines written to slots, null if appended
+  private final long[] slots; // positions of reserved slots, null if outlines are appended
+  private int count; // number of written outlines
+  private long offset; // position of next outline data
+  private ByteBuffer buffer; // data of outline, reused
+
+  /**
+   * Create file.
+   *
+   * @param file file to write, overwritten if exists
+   * @param capacity number of outlines to write
+   * @param precision precision of stored coordinates
+   * @throws IOException on write error
+   */
+  public OutlineArchiveWriter(Path file, int capacity, OutlineArchive.Precision precision)
+          throws IOException {
+    this(file, capacity, precision, null);
+  }
+
+  /**
+   * Create file with space reserved for every outline.
+   *
+   * <p>Outlines are written by {@link #write(int, Outline)}. Outlines not written are stored as
+   * empty ones, space of slot not used by outline stays in file.
+   *
+   * @param file file to write, overwritten if exists
+   * @param reserved maximal number of vertices of every outline
+   * @param precision precision of stored coordinates
+   * @throws IOException on write error
+   */
+  OutlineArchiveWriter(Path file, int[] reserved, OutlineArchive.Precision precision)
+          throws IOException {
+    this(file, reserved.length, precision, reserved.clone());
+  }
+
+  private OutlineArchiveWriter(Path file, int capacity, OutlineArchive.Precision precision,
+          int[] reserved) throws IOException {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Wrong number of outlines: " + capacity);
+    }
+    this.capacity = capacity;
+    this.precision = precision;
+    this.reserved = reserved;
+    index = ByteBuffer.allocate(OutlineArchive.INDEX_ENTRY_SIZE * capacity)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    offset = OutlineArchive.HEADER_SIZE + (long) OutlineArchive.INDEX_ENTRY_SIZE * capacity;
+    if (reserved != null) {
+      slots = new long[capacity];
+      for (int i = 0; i < capacity; i++) {
+        if (reserved[i] < 0) {
+          throw new IllegalArgumentException("Wrong size of outline " + i + ": " + reserved[i]);
+        }
+        slots[i] = offset;
+        index.putLong(offset).putInt(0).putInt(0);
+        offset += 2L * reserved[i] * precision.bytes;
+      }
+      count = capacity;
+    } else {
+      slots = null;
+    }
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    buffer = ByteBuffer.allocateDirect(0);
+  }
+
+  /**
+   * Append outline.
+   *
+   * @param outline outline to write
+   * @throws IOException on write error or if declared number of outlines has been written
+   */
+  public void write(List<Point2d> outline) throws IOException {
+    write(new Outline(outline));
+  }
+
+  /**
+   * Append outline stored in primitive arrays.
+   *
+   * @param outline outline to write
+   * @throws IOException on write error or if declared number of outlines has been written
+   */
+  void write(Outline outline) throws IOException {
+    if (slots != null) {
+      throw new IllegalStateException("Outlines must be written to reserved slots");
+    }
+    if (count >= capacity) {
+      throw new IOException("All " + capacity + " outlines already written");
+    }
+    int n = outline.size();
+    int len = 2 * n * precision.bytes;
+    if (buffer.capacity() < len) {
+      buffer = ByteBuffer.allocateDirect(len).order(ByteOrder.LITTLE_ENDIAN);
+    }
+    long pos = offset + write(outline, buffer, offset);
+    index.putLong(offset).putInt(n).putInt(0);
+    offset = pos;
+    count++;
+  }
+
+  /**
+   * Write outline to its reserved slot.
+   *
+   * <p>Can be called by many threads at once for different outlines. Outline written again
+   * replaces previous one. Writes must happen before {@link #close()}, e.g. be followed by
+   * joining threads.
+   *
+   * @param i index of outline
+   * @param outline outline to write, not longer than reserved for it
+   * @throws IOException on write error or if outline is longer than its slot
+   */
+  void write(int i, Outline outline) throws IOException {
+    if (slots == null) {
+      throw new IllegalStateException("Slots of outlines are not reserved");
+    }
+    int n = outline.size();
+    if (n > reserved[i]) {
+      throw new IOException("Outline " + i + " longer than reserved: " + n);
+    }
+    ByteBuffer b = ByteBuffer.allocate(2 * n * precision.bytes).order(ByteOrder.LITTLE_ENDIAN);
+    write(outline, b, slots[i]);
+    index.putInt(i * OutlineArchive.INDEX_ENTRY_SIZE + 8, n); // distinct bytes for every thread
+  }
+
+  /**
+   * Encode outline in buffer and write it to file.
+   *
+   * @param outline outline to write
+   * @param b buffer not shorter than outline data
+   * @param pos position in file
+   * @return number of written bytes
+   * @throws IOException on write error
+   */
+  private int write(Outline outline, ByteBuffer b, long pos) throws IOException {
+    int n = outline.size();
+    int len = 2 * n * precision.bytes;
+    b.clear();
+    if (precision == OutlineArchive.Precision.DOUBLE) {
+      b.asDoubleBuffer().put(outline.x).put(outline.y);
+    } else {
+      for (int k = 0; k < n; k++) {
+        b.putFloat(k * 4, (float) outline.x[k]);
+        b.putFloat((n + k) * 4, (float) outline.y[k]);
+      }
+    }
+    b.limit(len);
+    long p = pos;
+    while (b.hasRemaining()) {
+      p += channel.write(b, p);
+    }
+    return len;
+  }
+
+  /**
+   * Write header and index and close file.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      if (slots != null && channel.size() < offset) {
+        channel.write(ByteBuffer.allocate(1), offset - 1); // slots at the end are not written
+      }
+      ByteBuffer header = ByteBuffer.allocate(OutlineArchive.HEADER_SIZE)
+              .order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(OutlineArchive.MAGIC).putInt(OutlineArchive.VERSION)
+              .putInt(precision.bytes).putInt(count);
+      header.flip();
+      long pos = 0;
+      while (header.hasRemaining()) {
+        pos += channel.write(header, pos);
+      }
+      index.flip();
+      while (index.hasRemaining()) {
+        pos += channel.write(index, pos);
+      }
+    } finally {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package quimp.plugin;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.scijava.vecmath.Point2d;
+
+/**
+ * Reading and writing outlines stored as text coordinate lists.
+ *
+ * <p>Two layouts are recognised from the first data line of file:
+ * <ol>
+ * <li>one number per line, x and y coordinates of vertex in subsequent lines (as in test data of
+ * this plugin),
+ * <li>many numbers per line separated by commas, semicolons or white spaces (CSV files).
+ * Coordinates are taken from given columns.
+ * </ol>
+ * Empty lines, lines starting with <tt>#</tt> and lines with any non-numeric field (headers) are
+ * skipped. File holds one outline. Files with many frames, like QuimP snQP files where every frame
+ * starts with <tt>#Frame</tt> line, are rejected instead of being read as one outline.
+ *
+ * @author p.baniukiewicz
+ */
+class OutlineIo {
+  private static final Pattern SEPARATOR = Pattern.compile("[,;\\s]+");
+  /**
+   * Beginning of line starting next frame in multi-frame files.
+   */
+  static final String FRAME_MARKER = "#Frame";
+
+  /**
+   * Layout of coordinates in file.
+   *
+   * @author p.baniukiewicz
+   */
+  enum Layout {
+    /**
+     * One number per line.
+     */
+    SINGLE,
+    /**
+     * Vertex per line.
+     */
+    COLUMNS
+  }
+
+  /**
+   * Outline read from file with its layout.
+   *
+   * @author p.baniukiewicz
+   */
+  static class Data {
+    final List<Point2d> points;
+    final Layout layout;
+
+    Data(List<Point2d> points, Layout layout) {
+      this.points = points;
+      this.layout = layout;
+    }
+  }
+
+  private OutlineIo() {
+  }
+
+  /**
+   * Read outline from text file.
+   *
+   * @param file file to read
+   * @param xcol column of x coordinate, used for files with vertex per line
+   * @param ycol column of y coordinate, used for files with vertex per line
+   * @return outline and layout of file
+   * @throws IOException on read error, if file contains odd number of values in single column
+   *         layout, required columns are missing or file contains many frames
+   */
+  static Data read(Path file, int xcol, int ycol) throws IOException {
+    List<Point2d> points = new ArrayList<>();
+    Layout layout = null;
+    double pending = Double.NaN; // x coordinate waiting for y in single column layout
+    int lineNo = 0;
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lineNo++;
+        if (!points.isEmpty() && line.trim().startsWith(FRAME_MARKER)) {
+          throw new IOException(file + ":" + lineNo + ": many frames, one outline expected");
+        }
+        double[] values = parse(line);
+        if (values == null) {
+          continue;
+        }
+        if (layout == null) {
+          layout = values.length == 1 ? Layout.SINGLE : Layout.COLUMNS;
+        }
+        if (layout == Layout.SINGLE) {
+          if (values.length != 1) {
+            throw new IOException(file + ":" + lineNo + ": one value expected");
+          }
+          if (Double.isNaN(pending)) {
+            pending = values[0];
+          } else {
+            points.add(new Point2d(pending, values[0]));
+            pending = Double.NaN;
+          }
+        } else {
+          if (values.length <= Math.max(xcol, ycol)) {
+            throw new IOException(file + ":" + lineNo + ": not enough columns");
+          }
+          points.add(new Point2d(values[xcol], values[ycol]));
+        }
+      }
+    }
+    if (!Double.isNaN(pending)) {
+      throw new IOException(file + ": odd number of coordinates");
+    }
+    return new Data(points, layout == null ? Layout.COLUMNS : layout);
+  }
+
+  /**
+   * Write outline to text file.
+   *
+   * @param file file to write, parent directories are created
+   * @param points outline
+   * @param layout layout of file
+   * @throws IOException on write error
+   */
+  static void write(Path file, List<Point2d> points, Layout layout) throws IOException {
+    Path parent = file.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      for (Point2d p : points) {
+        if (layout == Layout.SINGLE) {
+          writer.write(Double.toString(p.getX()));
+          writer.newLine();
+          writer.write(Double.toString(p.getY()));
+        } else {
+          writer.write(p.getX() + "," + p.getY());
+        }
+        writer.newLine();
+      }
+    }
+  }
+
+  /**
+   * Parse numeric fields of line.
+   *
+   * @param line line of file
+   * @return values or <tt>null</tt> if line should be skipped
+   */
+  private static double[] parse(String line) {
+    String trimmed = line.trim();
+    if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+      return null;
+    }
+    String[] fields = SEPARATOR.split(trimmed);
+    double[] values = new double[fields.length];
+    try {
+      for (int i = 0; i < fields.length; i++) {
+        values[i] = Double.parseDouble(fields[i]);
+      }
+    } catch (NumberFormatException e) {
+      return null; // header
+    }
+    return values;
+  }
+}
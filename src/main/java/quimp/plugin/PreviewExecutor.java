@@ -0,0 +1,135 @@
+package quimp.plugin;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs preview computations in background thread publishing only the latest result.
+ *
+ * <p>Every request supersedes previous ones. Request is started after short delay, so rapid
+ * changes of parameters (e.g. scrolling spinner) are coalesced into one computation. Superseded
+ * request that has been already started is interrupted, its result is discarded anyway. Results
+ * and errors are delivered on Event Dispatch Thread.
+ *
+ * <p>Background thread is a daemon and it ends after {@link #DEFAULT_IDLE_TIMEOUT} ms without
+ * requests, new thread is started by next request. Thus executor that is not shut down explicitly
+ * does not keep any thread when preview is not used.
+ *
+ * @author p.baniukiewicz
+ */
+class PreviewExecutor {
+  static final Logger LOGGER = LoggerFactory.getLogger(PreviewExecutor.class.getName());
+  /**
+   * Default delay of starting computation in ms.
+   */
+  static final long DEFAULT_DELAY = 50;
+  /**
+   * Default time in ms after which idle background thread ends.
+   */
+  static final long DEFAULT_IDLE_TIMEOUT = 5000;
+  private final ScheduledThreadPoolExecutor executor;
+  private final long delay;
+  private final AtomicLong generation = new AtomicLong(); // number of the latest request
+  private Future<?> pending; // the latest request
+
+  /**
+   * Create executor with default delay.
+   */
+  PreviewExecutor() {
+    this(DEFAULT_DELAY, DEFAULT_IDLE_TIMEOUT);
+  }
+
+  /**
+   * Create executor.
+   *
+   * @param delay delay of starting computation in ms
+   * @param idleTimeout time in ms after which idle background thread ends, must be larger than
+   *        <tt>delay</tt>
+   */
+  PreviewExecutor(long delay, long idleTimeout) {
+    this.delay = delay;
+    executor = new ScheduledThreadPoolExecutor(1, r -> {
+      Thread t = new Thread(r, "HatFilter-preview");
+      t.setDaemon(true);
+      return t;
+    });
+    executor.setRemoveOnCancelPolicy(true); // superseded requests do not keep thread alive
+    executor.setKeepAliveTime(idleTimeout, TimeUnit.MILLISECONDS);
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Request computation superseding all previous ones.
+   *
+   * @param task computation to run in background
+   * @param onResult receiver of result, called on EDT only if no newer request has been made
+   * @param onError receiver of exception thrown by task, called on EDT only if no newer request
+   *        has been made
+   * @param <T> type of result
+   */
+  synchronized <T> void submit(Callable<T> task, Consumer<T> onResult,
+          Consumer<Exception> onError) {
+    long gen = generation.incrementAndGet();
+    if (pending != null) {
+      pending.cancel(true);
+    }
+    pending = executor.schedule(() -> run(gen, task, onResult, onError), delay,
+            TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stop background thread. Pending requests are cancelled.
+   */
+  synchronized void shutdown() {
+    generation.incrementAndGet();
+    executor.shutdownNow();
+  }
+
+  /**
+   * Get number of running background threads.
+   *
+   * @return 0 if executor is idle or shut down, 1 otherwise
+   */
+  int getThreadCount() {
+    return executor.getPoolSize();
+  }
+
+  private <T> void run(long gen, Callable<T> task, Consumer<T> onResult,
+          Consumer<Exception> onError) {
+    if (gen != generation.get()) {
+      return; // superseded before start
+    }
+    T result;
+    try {
+      result = task.call();
+    } catch (CancellationException e) {
+      LOGGER.trace("Preview cancelled");
+      return;
+    } catch (Exception e) {
+      publish(gen, () -> onError.accept(e));
+      return;
+    }
+    publish(gen, () -> onResult.accept(result));
+  }
+
+  private void publish(long gen, Runnable action) {
+    if (gen != generation.get()) {
+      return;
+    }
+    SwingUtilities.invokeLater(() -> {
+      if (gen == generation.get()) { // newer request can be made meanwhile
+        action.run();
+      }
+    });
+  }
+}
@@ -0,0 +1,234 @@
+package quimp.plugin;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rank table data kept between consecutive outlines of the same cell.
+ *
+ * <p>Outline of cell changes little from frame to frame, usually only some vertices move. Weighting
+ * of window depends only on window points, so it is taken from previous frame if none of them
+ * changed. Convexity flag of window depends on the whole outline, but ray crossing test of point is
+ * affected only by edges that span its y coordinate. Flag is taken from previous frame if window
+ * and its neighbouring vertices did not change and no window point lies within the y range of
+ * edges that changed (in previous or current outline). Circularity of outline without window is
+ * always recomputed, it is cheap. Reused data are the same as computed from scratch, therefore
+ * filter gives identical results in both modes.
+ *
+ * <p>If outlines differ in size, window size or treatment of crossing windows has changed or too
+ * many windows would have to be recomputed, whole rank table is rebuilt.
+ *
+ * <p>Comparison is done once per outline object, calling {@link #prepare(Outline, int, boolean)}
+ * again for the same object, window and treatment of crossing windows returns previous result. So
+ * cache can be selected for outline (see {@link RankCacheSet}) and then passed to filter with the
+ * same outline.
+ *
+ * <p>One cache should be used for one cell and by one thread at a time.
+ *
+ * @author p.baniukiewicz
+ */
+class RankCache {
+  static final Logger LOGGER = LoggerFactory.getLogger(RankCache.class.getName());
+  /**
+   * Default maximal fraction of windows to recompute for which cache is still used.
+   */
+  static final double DEFAULT_MAX_CHANGE = 0.5;
+  private final double maxChange;
+  // data from previous outline
+  private Outline outline;
+  private int window;
+  private boolean crossing; // crossing windows defective
+  private double[] weights;
+  private ConvexityTable convex;
+  // result of comparison with current outline, valid after prepare(Outline, int, boolean)
+  private boolean[] weightValid;
+  private boolean[] convexValid;
+  private Outline prepared; // outline compared by the last prepare, null if not compared
+  private int preparedWindow;
+  private boolean preparedCrossing;
+  private boolean reusable; // result of the last prepare
+
+  /**
+   * Create empty cache with default limit of changes.
+   */
+  RankCache() {
+    this(DEFAULT_MAX_CHANGE);
+  }
+
+  /**
+   * Create empty cache.
+   *
+   * @param maxChange maximal fraction of windows to recompute, above this limit rank table is
+   *        rebuilt
+   */
+  RankCache(double maxChange) {
+    this.maxChange = maxChange;
+  }
+
+  /**
+   * Compare outline with previous one and find reusable data.
+   *
+   * <p>Result is remembered, outline is not compared again if it is passed again with the same
+   * parameters.
+   *
+   * @param current current outline
+   * @param currentWindow current window size
+   * @param currentCrossing true if windows with crossing edges are defective
+   * @return true if any data can be reused, false if rank table must be rebuilt
+   */
+  boolean prepare(Outline current, int currentWindow, boolean currentCrossing) {
+    if (current == prepared && currentWindow == preparedWindow
+            && currentCrossing == preparedCrossing) {
+      return reusable;
+    }
+    prepared = current;
+    preparedWindow = currentWindow;
+    preparedCrossing = currentCrossing;
+    reusable = compare(current, currentWindow, currentCrossing);
+    return reusable;
+  }
+
+  /**
+   * Compare outline with previous one.
+   *
+   * @see #prepare(Outline, int, boolean)
+   */
+  private boolean compare(Outline current, int currentWindow, boolean currentCrossing) {
+    weightValid = null;
+    convexValid = null;
+    int n = current.size();
+    if (outline == null || outline.size() != n || window != currentWindow
+            || crossing != currentCrossing) {
+      return false;
+    }
+    // changed vertices and y range of edges adjacent to them
+    int[] changed = new int[n + 1]; // prefix count of changed vertices
+    double cy0 = Double.POSITIVE_INFINITY;
+    double cy1 = Double.NEGATIVE_INFINITY;
+    for (int v = 0; v < n; v++) {
+      boolean c = outline.x[v] != current.x[v] || outline.y[v] != current.y[v];
+      changed[v + 1] = changed[v] + (c ? 1 : 0);
+      if (c) {
+        for (int k = v - 1; k <= v + 1; k++) { // vertex and its neighbours
+          int j = (k + n) % n;
+          cy0 = Math.min(cy0, Math.min(outline.y[j], current.y[j]));
+          cy1 = Math.max(cy1, Math.max(outline.y[j], current.y[j]));
+        }
+      }
+    }
+    int[] band = new int[n + 1]; // prefix count of vertices within y range of changed edges
+    for (int v = 0; v < n; v++) {
+      band[v + 1] = band[v] + (current.y[v] >= cy0 && current.y[v] <= cy1 ? 1 : 0);
+    }
+    weightValid = new boolean[n];
+    convexValid = new boolean[n];
+    int recompute = 0;
+    for (int r = 0; r < n; r++) {
+      weightValid[r] = count(changed, r, window) == 0;
+      convexValid[r] = count(changed, r - 1, Math.min(window + 2, n)) == 0
+              && count(band, r, window) == 0;
+      if (!weightValid[r]) {
+        recompute++;
+      }
+    }
+    if (recompute > maxChange * n) {
+      LOGGER.debug("Outline changed too much, rank table rebuilt");
+      weightValid = null;
+      convexValid = null;
+      return false;
+    }
+    LOGGER.debug("Reusing " + (n - recompute) + " of " + n + " windows");
+    return true;
+  }
+
+  /**
+   * Check if weighting of window from previous outline is valid for current one.
+   *
+   * @param r position of window
+   * @return true if weighting can be reused
+   */
+  boolean isWeightValid(int r) {
+    return weightValid != null && weightValid[r];
+  }
+
+  /**
+   * Check if convexity flag of window from previous outline is valid for current one.
+   *
+   * @param r position of window
+   * @return true if flag can be reused
+   */
+  boolean isConvexityValid(int r) {
+    return convexValid != null && convexValid[r];
+  }
+
+  /**
+   * Get weighting of window computed for previous outline.
+   *
+   * @param r position of window
+   * @return weighting
+   */
+  double getWeight(int r) {
+    return weights[r];
+  }
+
+  /**
+   * Get convexity flags of previous outline.
+   *
+   * @return convexity flags, some may be not evaluated
+   */
+  ConvexityTable getConvexity() {
+    return convex;
+  }
+
+  /**
+   * Remember data of current outline.
+   *
+   * <p>Arrays and table are not copied. Flags evaluated in table after this call are remembered as
+   * well.
+   *
+   * @param current current outline
+   * @param currentWindow current window size
+   * @param currentCrossing true if windows with crossing edges are defective
+   * @param currentWeights weightings of all windows
+   * @param currentConvex convexity flags
+   */
+  void store(Outline current, int currentWindow, boolean currentCrossing,
+          double[] currentWeights, ConvexityTable currentConvex) {
+    outline = current;
+    window = currentWindow;
+    crossing = currentCrossing;
+    weights = currentWeights;
+    convex = currentConvex;
+    prepared = null; // results of comparison refer to previous outline
+  }
+
+  /**
+   * Forget previous outline.
+   */
+  void clear() {
+    outline = null;
+    weights = null;
+    convex = null;
+    weightValid = null;
+    convexValid = null;
+    prepared = null;
+  }
+
+  /**
+   * Count elements in circular range using prefix sums.
+   *
+   * @param prefix prefix sums, n+1 elements
+   * @param start first index of range, can be negative
+   * @param len length of range, not larger than n
+   * @return number of elements in range
+   */
+  private static int count(int[] prefix, int start, int len) {
+    int n = prefix.length - 1;
+    int s = ((start % n) + n) % n;
+    int e = s + len;
+    if (e <= n) {
+      return prefix[e] - prefix[s];
+    }
+    return prefix[n] - prefix[s] + prefix[e - n];
+  }
+}
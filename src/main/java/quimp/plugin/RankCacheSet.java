@@ -0,0 +1,103 @@
+package quimp.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rank table data of previous outlines of many cells.
+ *
+ * <p>BOA filters outlines of all cells of frame before the next frame, so consecutive outlines
+ * passed to one filter usually belong to different cells and single {@link RankCache} would be
+ * rebuilt on every call. Filter does not know which cell outline belongs to, therefore outline is
+ * matched against outlines remembered in caches. The most recently used cache that can reuse data
+ * for it (see {@link RankCache#prepare(Outline, int, boolean)}) is selected. Outlines of different
+ * cells differ in almost all vertices and never match. If no cache matches, new cache is created
+ * or the least recently used one is cleared when there are already {@link #getMaxCells()} of them.
+ *
+ * <p>Matching costs O(N) per cache, small compared to rank table. Set must be used by one thread
+ * at a time.
+ *
+ * @author p.baniukiewicz
+ */
+class RankCacheSet {
+  static final Logger LOGGER = LoggerFactory.getLogger(RankCacheSet.class.getName());
+  /**
+   * Default maximal number of remembered cells.
+   */
+  static final int DEFAULT_MAX_CELLS = 16;
+  private final int maxCells;
+  private final List<RankCache> caches = new ArrayList<>(); // the most recently used first
+
+  /**
+   * Create empty set with default limit of cells.
+   */
+  RankCacheSet() {
+    this(DEFAULT_MAX_CELLS);
+  }
+
+  /**
+   * Create empty set.
+   *
+   * @param maxCells maximal number of remembered cells
+   */
+  RankCacheSet(int maxCells) {
+    this.maxCells = maxCells;
+  }
+
+  /**
+   * Get maximal number of remembered cells.
+   *
+   * @return number of cells
+   */
+  int getMaxCells() {
+    return maxCells;
+  }
+
+  /**
+   * Get number of remembered cells.
+   *
+   * @return number of caches
+   */
+  int size() {
+    return caches.size();
+  }
+
+  /**
+   * Find cache for outline.
+   *
+   * @param current outline to filter
+   * @param window window size
+   * @param crossing true if windows with crossing edges are defective
+   * @return cache of the same cell or empty cache, to be passed to {@link HatFilterEngine}
+   */
+  RankCache select(Outline current, int window, boolean crossing) {
+    RankCache ret = null;
+    for (int i = 0; i < caches.size(); i++) {
+      if (caches.get(i).prepare(current, window, crossing)) {
+        ret = caches.remove(i);
+        LOGGER.debug("Outline matched cell " + i);
+        break;
+      }
+    }
+    if (ret == null) {
+      if (caches.size() < maxCells) {
+        ret = new RankCache();
+      } else {
+        ret = caches.remove(caches.size() - 1);
+        ret.clear();
+      }
+    }
+    caches.add(0, ret);
+    return ret;
+  }
+
+  /**
+   * Forget all cells.
+   */
+  void clear() {
+    caches.clear();
+  }
+}
@@ -0,0 +1,120 @@
+package quimp.plugin;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.scijava.vecmath.Point2d;
+
+/**
+ * Result of Step 1 of HatFilter for one outline and window size.
+ *
+ * <p>Rank table depends only on outline and window, therefore it can be kept and used for
+ * selecting candidates with other <i>pnum</i>, <i>alevmin</i> and <i>alevmax</i> (see
+ * {@link HatFilterEngine#select(RankTable, java.util.function.Consumer)}). Order of window
+ * positions and convexity flags are evaluated on first request and memorised. Evaluation is
+ * idempotent so table can be used by many threads at once.
+ *
+ * @author p.baniukiewicz
+ */
+class RankTable {
+  /**
+   * Input outline.
+   */
+  final List<Point2d> points;
+  /**
+   * Primitive copy of input outline.
+   */
+  final Outline outline;
+  /**
+   * Size of window.
+   */
+  final int window;
+  /**
+   * Ranks of window positions normalised to maximum. Must not be modified.
+   */
+  final double[] circ;
+  /**
+   * Convexity flags of window positions.
+   */
+  final ConvexityTable convex;
+  /**
+   * Recorder of events of run started by computing table, <tt>null</tt> if not recorded.
+   */
+  final HatFilterRecorder events;
+  /**
+   * Time of computing table in ns, 0 if not measured.
+   */
+  final long time;
+  /**
+   * Number of window weightings computed for this table.
+   */
+  final int windowsEvaluated;
+  /**
+   * Number of convexity flags computed for this table.
+   */
+  final int convexityTests;
+  private volatile int[] order; // window positions sorted by rank, null if not sorted yet
+  private final AtomicBoolean reported = new AtomicBoolean(); // statistics taken by selection
+
+  RankTable(List<Point2d> points, Outline outline, int window, double[] circ,
+          ConvexityTable convex, HatFilterRecorder events, long time, int windowsEvaluated,
+          int convexityTests) {
+    this.points = points;
+    this.outline = outline;
+    this.window = window;
+    this.circ = circ;
+    this.convex = convex;
+    this.events = events;
+    this.time = time;
+    this.windowsEvaluated = windowsEvaluated;
+    this.convexityTests = convexityTests;
+  }
+
+  /**
+   * Get window positions ordered by rank, descending.
+   *
+   * @return positions, must not be modified
+   * @see HatFilterEngine#argsortDescending(double[])
+   */
+  int[] getOrder() {
+    int[] ret = order;
+    if (ret == null) {
+      ret = HatFilterEngine.argsortDescending(circ);
+      order = ret;
+    }
+    return ret;
+  }
+
+  /**
+   * Check if statistics and events of computing table should be reported.
+   *
+   * @return true on the first call only
+   */
+  boolean claimStatistics() {
+    return !reported.getAndSet(true);
+  }
+
+  /**
+   * Check if table has been computed for given outline and window.
+   *
+   * <p>Outline must be the same object as used for computing table and must not be modified
+   * since then.
+   *
+   * @param points outline
+   * @param window size of window
+   * @return true if table can be used for filtering <tt>points</tt> with <tt>window</tt>
+   */
+  boolean isFor(List<Point2d> points, int window) {
+    if (points != this.points || window != this.window || points.size() != outline.size()) {
+      return false;
+    }
+    int i = 0;
+    for (Point2d p : points) {
+      if (p.getX() != outline.x[i] || p.getY() != outline.y[i]) {
+        return false;
+      }
+      i++;
+    }
+    return true;
+  }
+}
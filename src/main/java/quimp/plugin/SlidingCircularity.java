@@ -0,0 +1,103 @@
+package quimp.plugin;
+
+import java.util.List;
+
+/**
+ * Circularity of outline with window of points removed, for all window positions at once.
+ *
+ * <p>For window of size <i>w</i> placed at position <i>r</i> (covering vertices
+ * <i>r</i>..<i>r+w-1</i>, wrapped) the remaining polygon consists of vertices
+ * <i>r+w</i>..<i>r-1</i>. Its shoelace sum and perimeter are sums over <i>N-w-1</i> consecutive
+ * edges of the original outline plus one closing edge between vertices <i>r-1</i> and
+ * <i>r+w</i>. Sums over consecutive edges are taken from prefix tables built once per outline,
+ * therefore the whole table of circularities costs O(N) instead of O(N^2) required by calling
+ * {@link com.github.celldynamics.quimp.geom.BasicPolygons} for every window position.
+ *
+ * <p>Per-edge terms are computed exactly as in
+ * {@link com.github.celldynamics.quimp.geom.BasicPolygons#getPolyArea(List)} and
+ * {@link com.github.celldynamics.quimp.geom.BasicPolygons#getPolyPerim(List)}, only the order of
+ * summation differs. Results agree with direct computation within relative error of
+ * {@value #TOLERANCE} for outlines of non-zero area.
+ *
+ * @author p.baniukiewicz
+ */
+class SlidingCircularity {
+  /**
+   * Relative tolerance of circularities compared to direct computation.
+   */
+  static final double TOLERANCE = 1e-9;
+
+  private final int n; // number of outline vertices
+  private final double[] x; // x coordinates of outline
+  private final double[] y; // y coordinates of outline
+  // crossSum[k] - sum of cross products for edges 0..k-1, edge i is between vertex i and i+1
+  private final double[] crossSum;
+  // lenSum[k] - sum of lengths of edges 0..k-1
+  private final double[] lenSum;
+
+  /**
+   * Build prefix tables for given outline.
+   *
+   * @param p outline, not modified
+   */
+  SlidingCircularity(final Outline p) {
+    n = p.size();
+    x = p.x;
+    y = p.y;
+    crossSum = new double[n + 1];
+    lenSum = new double[n + 1];
+    for (int i = 0; i < n; i++) {
+      int j = (i + 1) % n;
+      crossSum[i + 1] = crossSum[i] + cross(i, j);
+      lenSum[i + 1] = lenSum[i] + length(i, j);
+    }
+  }
+
+  /**
+   * Compute circularity of outline without window for all window positions.
+   *
+   * @param window size of window, must be smaller than number of vertices
+   * @return array of circularities, index is related to first vertex covered by window
+   */
+  double[] getCircularities(int window) {
+    double[] ret = new double[n];
+    int rem = n - window - 1; // number of outline edges that remain after removing window
+    for (int r = 0; r < n; r++) {
+      int first = (r + window) % n; // first vertex after window
+      int last = (r - 1 + n) % n; // last vertex before window
+      double area = sum(crossSum, first, rem) + cross(last, first);
+      double perim = sum(lenSum, first, rem) + length(last, first);
+      area = Math.abs(area / 2.0);
+      ret[r] = (4 * Math.PI * area) / (perim * perim);
+    }
+    return ret;
+  }
+
+  /**
+   * Sum of <tt>count</tt> consecutive edge terms starting from edge <tt>start</tt>, wrapped.
+   */
+  private double sum(double[] prefix, int start, int count) {
+    int end = start + count;
+    if (end <= n) {
+      return prefix[end] - prefix[start];
+    } else {
+      return prefix[n] - prefix[start] + prefix[end - n];
+    }
+  }
+
+  /**
+   * Shoelace term for edge between vertices i and j.
+   */
+  private double cross(int i, int j) {
+    return x[i] * y[j] - y[i] * x[j];
+  }
+
+  /**
+   * Length of edge between vertices i and j.
+   */
+  private double length(int i, int j) {
+    double dx = x[j] - x[i];
+    double dy = y[j] - y[i];
+    return Math.sqrt(dx * dx + dy * dy);
+  }
+}
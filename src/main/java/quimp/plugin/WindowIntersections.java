@@ -0,0 +1,136 @@
+package quimp.plugin;
+
+/**
+ * Detection of crossing edges of window polygons for consecutive window positions.
+ *
+ * <p>Window of size <i>w</i> placed at position <i>r</i> forms polygon of vertices
+ * <i>r</i>..<i>r+w-1</i> (wrapped). Its edges are <i>w-1</i> consecutive edges of outline (chain)
+ * and one closing edge between vertices <i>r+w-1</i> and <i>r</i>. Number of crossing pairs of
+ * chain edges is kept between positions. Moving window by one vertex removes the first chain edge
+ * and adds the next one, so only pairs with these two edges are tested and test of one position
+ * costs O(w) instead of O(w^2) required to test all pairs of edges. Closing edge is tested against
+ * chain every time.
+ *
+ * <p>Edges sharing vertex are adjacent and they are not tested against each other. Other edges
+ * cross if they have any common point, also when they only touch. Results are returned as values,
+ * no exception is thrown for defective polygons.
+ *
+ * <p>Object keeps state of last position and must not be shared between threads. Positions
+ * increasing by less than window size are tested incrementally, any other position is tested
+ * from scratch.
+ *
+ * @author p.baniukiewicz
+ */
+class WindowIntersections {
+  private final int n; // number of vertices
+  private final double[] x;
+  private final double[] y;
+  private final int window;
+  private int pos = -1; // last tested position, -1 if none
+  private int count; // number of crossing pairs of chain edges at pos
+
+  /**
+   * Prepare test for outline.
+   *
+   * @param outline outline, not modified
+   * @param window size of window, not larger than number of vertices
+   */
+  WindowIntersections(final Outline outline, int window) {
+    n = outline.size();
+    x = outline.x;
+    y = outline.y;
+    this.window = window;
+  }
+
+  /**
+   * Check whether edges of window polygon cross.
+   *
+   * @param r position of window, index of its first vertex
+   * @return true if any two not adjacent edges of window polygon have common point
+   */
+  boolean isCrossing(int r) {
+    if (pos >= 0 && r >= pos && r - pos < window) {
+      while (pos < r) {
+        slide();
+      }
+    } else {
+      pos = r;
+      count = 0;
+      for (int i = r; i < r + window - 3; i++) {
+        count += crossings(i, i + 2, r + window - 2);
+      }
+    }
+    if (count > 0) {
+      return true;
+    }
+    // closing edge is adjacent to the first and the last chain edge
+    int last = (r + window - 1) % n;
+    int first = r % n;
+    for (int i = r + 1; i <= r + window - 3; i++) {
+      int a = i % n;
+      int b = (i + 1) % n;
+      if (intersect(last, first, a, b)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Move window by one vertex updating number of crossing chain edges.
+   */
+  private void slide() {
+    int r = pos;
+    // pairs of the first chain edge removed, pairs of the new last one added
+    count -= crossings(r, r + 2, r + window - 2);
+    count += crossings(r + window - 1, r + 1, r + window - 3);
+    pos++;
+  }
+
+  /**
+   * Number of outline edges from <tt>lo</tt> to <tt>hi</tt> inclusive crossing edge <tt>e</tt>.
+   * Edge k is between vertex k and k+1, indexes are wrapped.
+   */
+  private int crossings(int e, int lo, int hi) {
+    int a = e % n;
+    int b = (e + 1) % n;
+    int c = 0;
+    for (int k = lo; k <= hi; k++) {
+      if (intersect(a, b, k % n, (k + 1) % n)) {
+        c++;
+      }
+    }
+    return c;
+  }
+
+  /**
+   * Test of closed segments between vertices a-b and c-d.
+   */
+  private boolean intersect(int a, int b, int c, int d) {
+    double d1 = orient(c, d, a);
+    double d2 = orient(c, d, b);
+    double d3 = orient(a, b, c);
+    double d4 = orient(a, b, d);
+    if (((d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0))
+            && ((d3 > 0 && d4 < 0) || (d3 < 0 && d4 > 0))) {
+      return true;
+    }
+    return (d1 == 0 && onSegment(c, d, a)) || (d2 == 0 && onSegment(c, d, b))
+            || (d3 == 0 && onSegment(a, b, c)) || (d4 == 0 && onSegment(a, b, d));
+  }
+
+  /**
+   * Cross product of vectors i-j and i-k.
+   */
+  private double orient(int i, int j, int k) {
+    return (x[j] - x[i]) * (y[k] - y[i]) - (y[j] - y[i]) * (x[k] - x[i]);
+  }
+
+  /**
+   * Check if vertex k collinear with segment i-j lies within its bounding box.
+   */
+  private boolean onSegment(int i, int j, int k) {
+    return Math.min(x[i], x[j]) <= x[k] && x[k] <= Math.max(x[i], x[j])
+            && Math.min(y[i], y[j]) <= y[k] && y[k] <= Math.max(y[i], y[j]);
+  }
+}
@@ -0,0 +1,86 @@
+package quimp.plugin;
+
+import static com.github.baniuk.ImageJTestSuite.dataaccess.ResourceLoader.loadResource;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.scijava.vecmath.Point2d;
+
+import com.github.baniuk.ImageJTestSuite.dataaccess.DataLoader;
+import com.github.celldynamics.quimp.geom.BasicPolygons;
+
+/**
+ * Test class for ConvexityIndex.
+ *
+ * @author p.baniukiewicz
+ *
+ */
+public class ConvexityIndexTest {
+
+  /**
+   * Compare index with direct test for all window positions.
+   */
+  private void compare(List<Point2d> p, int window) {
+    BasicPolygons bp = new BasicPolygons();
+    ConvexityIndex ci = new ConvexityIndex(new Outline(p));
+    int n = p.size();
+    for (int r = 0; r < n; r++) {
+      List<Point2d> pointsnowindow = new CircularSubList<>(p, r + window, n - window);
+      List<Point2d> pointswindow = new CircularSubList<>(p, r, window);
+      assertEquals("r=" + r + " window=" + window,
+              bp.areAllPointsInside(pointsnowindow, pointswindow),
+              ci.areAllPointsInside(r, window));
+    }
+  }
+
+  /**
+   * Test of ConvexityIndex.areAllPointsInside(int, int).
+   *
+   * <p>Pre: Real outlines with protrusions
+   *
+   * <p>Post: The same results as BasicPolygons.areAllPointsInside
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testAreAllPointsInside() throws Exception {
+    for (String file : new String[] { "testData_prot.dat", "testData_137.dat",
+        "testData_circle.dat" }) {
+      List<Point2d> p =
+              new DataLoader(loadResource(getClass().getClassLoader(), file).toString())
+                      .getListofPoints();
+      for (int window : new int[] { 3, 9, 23 }) {
+        compare(p, window);
+      }
+    }
+  }
+
+  /**
+   * Test of ConvexityIndex.areAllPointsInside(int, int).
+   *
+   * <p>Pre: Noisy outlines on integer grid (many horizontal edges and vertices on the same level)
+   * and windows leaving only few vertices of outline
+   *
+   * <p>Post: The same results as BasicPolygons.areAllPointsInside
+   */
+  @Test
+  public void testAreAllPointsInside_noisy() {
+    Random rnd = new Random(0);
+    for (int t = 0; t < 20; t++) {
+      List<Point2d> p = new ArrayList<>();
+      int n = 10 + rnd.nextInt(60);
+      for (int i = 0; i < n; i++) {
+        double a = 2 * Math.PI * i / n;
+        double r = 20 + rnd.nextInt(10);
+        p.add(new Point2d(Math.round(r * Math.cos(a)), Math.round(r * Math.sin(a))));
+      }
+      for (int window = 1; window < n; window += 2) {
+        compare(p, window);
+      }
+    }
+  }
+}
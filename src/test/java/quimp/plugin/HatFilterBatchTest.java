@@ -0,0 +1,89 @@
+package quimp.plugin;
+
+import static com.github.baniuk.ImageJTestSuite.dataaccess.ResourceLoader.loadResource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.vecmath.Point2d;
+
+import com.github.baniuk.ImageJTestSuite.dataaccess.DataLoader;
+import com.github.celldynamics.quimp.plugin.ParamList;
+
+/**
+ * Test class for HatFilterBatch.
+ *
+ * @author p.baniukiewicz
+ *
+ */
+public class HatFilterBatchTest {
+
+  private List<List<Point2d>> outlines;
+  private ParamList config;
+
+  /**
+   * Load outlines.
+   *
+   * @throws Exception Exception
+   */
+  @SuppressWarnings("serial")
+  @Before
+  public void setUp() throws Exception {
+    outlines = new ArrayList<>();
+    for (String file : new String[] { "testData_137.dat", "testData_1.dat", "testData_125.dat",
+        "testData_75.dat", "testData_prot.dat" }) {
+      outlines.add(new DataLoader(loadResource(getClass().getClassLoader(), file).toString())
+              .getListofPoints());
+    }
+    config = new ParamList() {
+      {
+        put("window", "23");
+        put("pnum", "2");
+        put("alevmin", "0.0");
+        put("alevmax", "1.0");
+      }
+    };
+  }
+
+  /**
+   * Test of HatFilterBatch.filter(Collection).
+   *
+   * <p>Pre: Real outlines and one too short to be filtered
+   *
+   * <p>Post: Results in input order, the same as from plugin, error reported only for short
+   * outline
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testFilter() throws Exception {
+    List<Point2d> tooShort = new ArrayList<>(outlines.get(0).subList(0, 10));
+    outlines.add(2, tooShort);
+    ForkJoinPool pool = new ForkJoinPool(3);
+    try {
+      List<HatFilterBatch.Result> res = new HatFilterBatch(config, pool).filter(outlines);
+      assertEquals(outlines.size(), res.size());
+      for (int i = 0; i < outlines.size(); i++) {
+        if (outlines.get(i) == tooShort) {
+          assertFalse(res.get(i).isSuccess());
+          assertNull(res.get(i).getOutline());
+          continue;
+        }
+        assertTrue(res.get(i).isSuccess());
+        HatSnakeFilter_ hf = new HatSnakeFilter_();
+        hf.attachData(outlines.get(i));
+        hf.setPluginConfig(config);
+        assertEquals(hf.runPlugin(), res.get(i).getOutline());
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
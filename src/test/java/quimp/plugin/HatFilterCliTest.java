@@ -0,0 +1,200 @@
+package quimp.plugin;
+
+import static com.github.baniuk.ImageJTestSuite.dataaccess.ResourceLoader.loadResource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.scijava.vecmath.Point2d;
+
+import com.github.baniuk.ImageJTestSuite.dataaccess.DataLoader;
+
+/**
+ * Test class for HatFilterCli and OutlineIo.
+ *
+ * @author p.baniukiewicz
+ *
+ */
+public class HatFilterCliTest {
+
+  /**
+   * Temporary folder.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private List<Point2d> prot;
+  private Path in;
+  private Path out;
+  private ByteArrayOutputStream outStream;
+  private ByteArrayOutputStream errStream;
+
+  /**
+   * Prepare input tree.
+   *
+   * <p>Tree contains test outline in one value per line format, the same outline as CSV file with
+   * header and additional column, binary file with this outline and too short one, file with
+   * wrong content and files not matching pattern (also snQP file with two frames).
+   *
+   * @throws Exception Exception
+   */
+  @Before
+  public void setUp() throws Exception {
+    Path dat = Paths
+            .get(loadResource(getClass().getClassLoader(), "testData_prot.dat").toString());
+    prot = new DataLoader(dat.toString()).getListofPoints();
+    in = folder.newFolder("in").toPath();
+    out = folder.getRoot().toPath().resolve("out");
+    Files.createDirectories(in.resolve("a/b"));
+    Files.copy(dat, in.resolve("prot.dat"));
+    List<String> csv = new ArrayList<>();
+    csv.add("#node, x, y");
+    csv.add("index,x,y");
+    int i = 0;
+    for (Point2d p : prot) {
+      csv.add(i++ + ", " + p.getX() + ", " + p.getY());
+    }
+    Files.write(in.resolve("a/b/prot.csv"), csv, StandardCharsets.UTF_8);
+    Files.write(in.resolve("a/wrong.txt"), "1\n2\n3\n".getBytes(StandardCharsets.UTF_8));
+    Files.write(in.resolve("a/skipped.bin"), new byte[] { 1, 2, 3 });
+    List<String> snqp = new ArrayList<>();
+    for (String frame : new String[] { "#Frame 1", "#Frame 2" }) {
+      snqp.add(frame);
+      i = 0;
+      for (Point2d p : prot) {
+        snqp.add(i + "\t" + (double) i + "\t" + p.getX() + "\t" + p.getY());
+        i++;
+      }
+    }
+    Files.write(in.resolve("a/cell.snQP"), snqp, StandardCharsets.UTF_8);
+    try (OutlineArchiveWriter writer = new OutlineArchiveWriter(in.resolve("a/prot.hato"), 3,
+            OutlineArchive.Precision.DOUBLE)) {
+      writer.write(prot);
+      writer.write(prot.subList(0, 5)); // too short
+      writer.write(prot);
+    }
+    outStream = new ByteArrayOutputStream();
+    errStream = new ByteArrayOutputStream();
+  }
+
+  /**
+   * Test of HatFilterCli.run(String[], PrintStream, PrintStream).
+   *
+   * <p>Pre: Tree of outline files
+   *
+   * <p>Post: Outlines filtered as by plugin and written in input format, error reported for wrong
+   * file
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testRun() throws Exception {
+    int ret = HatFilterCli.run(new String[] { "--window", "9", "--pnum", "3", "--threads", "2",
+        "--columns", "1,2", in.toString(), out.toString() }, new PrintStream(outStream),
+            new PrintStream(errStream));
+    assertEquals(1, ret);
+    List<Point2d> expected = new HatFilterEngine(9, 3, 0, 1).filter(prot);
+    OutlineIo.Data dat = OutlineIo.read(out.resolve("prot.dat"), 0, 1);
+    assertEquals(OutlineIo.Layout.SINGLE, dat.layout);
+    assertEquals(expected, dat.points);
+    OutlineIo.Data csv = OutlineIo.read(out.resolve("a/b/prot.csv"), 0, 1);
+    assertEquals(OutlineIo.Layout.COLUMNS, csv.layout);
+    assertEquals(expected, csv.points);
+    try (OutlineArchive archive = new OutlineArchive(out.resolve("a/prot.hato"))) {
+      assertEquals(3, archive.size());
+      assertEquals(expected, archive.get(0));
+      assertEquals(prot.subList(0, 5), archive.get(1));
+      assertEquals(expected, archive.get(2));
+    }
+    assertFalse(Files.exists(out.resolve("a/wrong.txt")));
+    assertFalse(Files.exists(out.resolve("a/skipped.bin")));
+    assertFalse(Files.exists(out.resolve("a/cell.snQP")));
+    String err = new String(errStream.toByteArray(), StandardCharsets.UTF_8);
+    assertTrue(err.contains("wrong.txt"));
+    assertTrue(err.contains("prot.hato[1]"));
+    String report = new String(outStream.toByteArray(), StandardCharsets.UTF_8);
+    assertTrue(report.contains("3 files (2 errors)"));
+  }
+
+  /**
+   * Test of HatFilterCli.run(String[], PrintStream, PrintStream).
+   *
+   * <p>Pre: Binary file with more outlines than filtered by one task
+   *
+   * <p>Post: All outlines filtered and written at their indexes
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testRun_archiveRanges() throws Exception {
+    Path dir = folder.newFolder("big").toPath();
+    int size = 2 * HatFilterCli.ARCHIVE_RANGE + 3;
+    try (OutlineArchiveWriter writer = new OutlineArchiveWriter(dir.resolve("big.hato"), size,
+            OutlineArchive.Precision.DOUBLE)) {
+      for (int i = 0; i < size; i++) {
+        writer.write(prot.subList(0, prot.size() - i % 7)); // different sizes
+      }
+    }
+    int ret = HatFilterCli.run(new String[] { "--window", "9", "--pnum", "3", "--threads", "3",
+        dir.toString(), out.toString() }, new PrintStream(outStream), new PrintStream(errStream));
+    assertEquals(0, ret);
+    HatFilterEngine engine = new HatFilterEngine(9, 3, 0, 1);
+    try (OutlineArchive archive = new OutlineArchive(out.resolve("big.hato"))) {
+      assertEquals(size, archive.size());
+      for (int i = 0; i < size; i++) {
+        assertEquals(engine.filter(prot.subList(0, prot.size() - i % 7)), archive.get(i));
+      }
+    }
+    String report = new String(outStream.toByteArray(), StandardCharsets.UTF_8);
+    assertTrue(report.contains("1 files (0 errors)"));
+  }
+
+  /**
+   * Test of OutlineIo.read(Path, int, int).
+   *
+   * <p>Pre: File with two frames
+   *
+   * <p>Post: Exception
+   *
+   * @throws Exception Exception
+   */
+  @Test(expected = IOException.class)
+  public void testRead_frames() throws Exception {
+    OutlineIo.read(in.resolve("a/cell.snQP"), 2, 3);
+  }
+
+  /**
+   * Test of HatFilterCli.run(String[], PrintStream, PrintStream).
+   *
+   * <p>Pre: Wrong arguments
+   *
+   * <p>Post: Usage error
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testRun_wrongArguments() throws Exception {
+    PrintStream o = new PrintStream(outStream);
+    PrintStream e = new PrintStream(errStream);
+    assertEquals(2, HatFilterCli.run(new String[] { in.toString() }, o, e));
+    assertEquals(2, HatFilterCli.run(new String[] { "--window", "a", in.toString(),
+        out.toString() }, o, e));
+    assertEquals(2, HatFilterCli.run(new String[] { "--size", "3", in.toString(),
+        out.toString() }, o, e));
+    assertEquals(2, HatFilterCli.run(new String[] { out.toString(), in.toString() }, o, e));
+  }
+}
@@ -0,0 +1,374 @@
+package quimp.plugin;
+
+import static com.github.baniuk.ImageJTestSuite.dataaccess.ResourceLoader.loadResource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.scijava.vecmath.Point2d;
+import org.scijava.vecmath.Vector2d;
+
+import com.github.baniuk.ImageJTestSuite.dataaccess.DataLoader;
+import com.github.celldynamics.quimp.geom.BasicPolygons;
+import com.github.celldynamics.quimp.plugin.ParamList;
+import com.github.celldynamics.quimp.plugin.QuimpPluginException;
+
+/**
+ * Test class for HatFilterEngine.
+ *
+ * @author p.baniukiewicz
+ *
+ */
+public class HatFilterEngineTest {
+
+  /**
+   * Test of HatFilterEngine.argsortDescending(double[]).
+   *
+   * <p>Pre: Values with many ties, signed zeros, infinities and NaN
+   *
+   * <p>Post: The same order as stable sort of boxed values in descending order
+   */
+  @Test
+  public void testArgsortDescending() {
+    Random rnd = new Random(0);
+    double[] special = { 0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY,
+        Double.NEGATIVE_INFINITY, 1.0, -1.0 };
+    for (int t = 0; t < 50; t++) {
+      int n = 1 + rnd.nextInt(200);
+      double[] a = new double[n];
+      for (int i = 0; i < n; i++) {
+        a[i] = rnd.nextInt(4) == 0 ? special[rnd.nextInt(special.length)] : rnd.nextInt(10) / 7.0;
+      }
+      Integer[] expected = new Integer[n];
+      for (int i = 0; i < n; i++) {
+        expected[i] = i;
+      }
+      Arrays.sort(expected, (i, j) -> Double.compare(a[j], a[i]));
+      int[] result = HatFilterEngine.argsortDescending(a);
+      for (int i = 0; i < n; i++) {
+        assertEquals("n=" + n + " i=" + i, expected[i].intValue(), result[i]);
+      }
+    }
+  }
+
+  /**
+   * Test of HatFilterEngine.filter(List).
+   *
+   * <p>Pre: Circle, where many windows have equal ranks, and windows wrapping around end of data
+   *
+   * <p>Post: Exactly pnum windows removed, they do not overlap
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testFilter_ties() throws Exception {
+    List<Point2d> circle = new DataLoader(
+            loadResource(getClass().getClassLoader(), "testData_circle.dat").toString())
+                    .getListofPoints();
+    for (int window : new int[] { 3, 5, 9 }) {
+      for (int pnum = 1; pnum <= 4; pnum++) {
+        HatFilterEngine engine = new HatFilterEngine(window, pnum, 0, 1);
+        assertEquals("window=" + window + " pnum=" + pnum, circle.size() - window * pnum,
+                engine.filter(circle).size());
+      }
+    }
+  }
+
+  /**
+   * Test of HatFilterEngine.rank(List, RankCache) and HatFilterEngine.select(RankTable, Consumer).
+   *
+   * <p>Pre: One rank table used for many selection parameters
+   *
+   * <p>Post: The same results as full filter, table of other window rejected
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testRankSelect() throws Exception {
+    List<Point2d> prot = new DataLoader(
+            loadResource(getClass().getClassLoader(), "testData_prot.dat").toString())
+                    .getListofPoints();
+    RankTable table = new HatFilterEngine(9, 1, 0, 1).rank(prot, null);
+    assertTrue(table.isFor(prot, 9));
+    assertFalse(table.isFor(prot, 11));
+    assertFalse(table.isFor(new ArrayList<>(prot), 9));
+    for (int pnum = 1; pnum <= 4; pnum++) {
+      for (double alevmin : new double[] { 0.0, 0.3, 0.9 }) {
+        HatFilterEngine engine = new HatFilterEngine(9, pnum, alevmin, 1.0);
+        assertEquals("pnum=" + pnum + " alevmin=" + alevmin, engine.filter(prot),
+                engine.select(table, null));
+      }
+    }
+    try {
+      new HatFilterEngine(11, 1, 0, 1).select(table, null);
+      fail("Exception not thrown");
+    } catch (QuimpPluginException e) {
+      assertTrue(e != null);
+    }
+  }
+
+  /**
+   * Noisy outline with many self-intersecting windows and negative coordinates.
+   */
+  private List<Point2d> noisyOutline() {
+    Random rnd = new Random(0);
+    List<Point2d> noisy = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      double a = 2 * Math.PI * i / 300;
+      double rad = 40 + 15 * rnd.nextDouble();
+      noisy.add(new Point2d(rad * Math.cos(a) - 20, rad * Math.sin(a) + rnd.nextGaussian() * 3));
+    }
+    return noisy;
+  }
+
+  /**
+   * Test of HatFilterEngine.Builder.crossingDefective(boolean).
+   *
+   * <p>Pre: Self-intersecting outline filtered with and without test of crossing windows, one
+   * cache shared by both engines
+   *
+   * <p>Post: Test enabled by default, ranks and results differ, cache rebuilt when setting changes
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testFilter_crossingDefective() throws Exception {
+    List<Point2d> noisy = noisyOutline();
+    int differ = 0;
+    for (int window : new int[] { 9, 23 }) {
+      HatFilterEngine on = HatFilterEngine.builder().window(window).build();
+      HatFilterEngine off = on.toBuilder().crossingDefective(false).build();
+      assertTrue(on.isCrossingDefective());
+      assertFalse(off.isCrossingDefective());
+      double[] circOn = on.rank(noisy, null).circ;
+      double[] circOff = off.rank(noisy, null).circ;
+      assertFalse(Arrays.equals(circOn, circOff));
+      RankCache cache = new RankCache();
+      assertTrue(Arrays.equals(circOn, on.rank(noisy, cache).circ));
+      assertTrue(Arrays.equals(circOff, off.rank(noisy, cache).circ));
+      assertTrue(Arrays.equals(circOn, on.rank(noisy, cache).circ));
+      for (int pnum = 1; pnum <= 3; pnum++) {
+        List<Point2d> resOn = on.toBuilder().pnum(pnum).build().filter(noisy);
+        List<Point2d> resOff = off.toBuilder().pnum(pnum).build().filter(noisy);
+        differ += resOn.equals(resOff) ? 0 : 1;
+      }
+    }
+    assertTrue(differ > 0);
+  }
+
+  /**
+   * Test of HatFilterEngine.Builder.
+   *
+   * <p>Pre: Engines created by builder, from configuration and copied by toBuilder()
+   *
+   * <p>Post: Parameters set, source engine not changed, wrong configuration rejected
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testBuilder() throws Exception {
+    HatFilterEngine engine = HatFilterEngine.builder().window(9).pnum(3).alevmin(0.1).build();
+    assertEquals(9, engine.getWindow());
+    assertEquals(3, engine.getPnum());
+    assertEquals(0.1, engine.getAlevmin(), 0);
+    assertEquals(1.0, engine.getAlevmax(), 0);
+    HatFilterEngine copy = engine.toBuilder().pnum(1).build();
+    assertEquals(9, copy.getWindow());
+    assertEquals(1, copy.getPnum());
+    assertEquals(3, engine.getPnum());
+    ParamList config = new ParamList() {
+      {
+        put("window", "11");
+        put("pnum", "2");
+        put("alevmin", "0.0");
+        put("alevmax", "1.0");
+      }
+    };
+    assertEquals(11, HatFilterEngine.fromConfig(config).getWindow());
+    config.put("pnum", "a");
+    try {
+      HatFilterEngine.fromConfig(config);
+      fail("Exception not thrown");
+    } catch (QuimpPluginException e) {
+      assertTrue(e != null);
+    }
+  }
+
+  /**
+   * Test of HatFilterEngine.filter(List).
+   *
+   * <p>Pre: One engine used by many threads at once, large outline processed in parallel
+   *
+   * <p>Post: The same results as in one thread
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testFilter_concurrent() throws Exception {
+    List<Point2d> prot = new DataLoader(
+            loadResource(getClass().getClassLoader(), "testData_prot.dat").toString())
+                    .getListofPoints();
+    List<Point2d> circle = new DataLoader(
+            loadResource(getClass().getClassLoader(), "testData_circle.dat").toString())
+                    .getListofPoints();
+    HatFilterEngine engine =
+            HatFilterEngine.builder().window(9).pnum(3).parallelThreshold(0).build();
+    List<Point2d> expProt = engine.filter(prot);
+    List<Point2d> expCircle = engine.filter(circle);
+    ExecutorService exec = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Boolean>> res = new ArrayList<>();
+      for (int t = 0; t < 64; t++) {
+        boolean even = t % 2 == 0;
+        res.add(exec.submit(() -> even ? expProt.equals(engine.filter(prot))
+                : expCircle.equals(engine.filter(circle))));
+      }
+      for (Future<Boolean> f : res) {
+        assertTrue(f.get());
+      }
+    } finally {
+      exec.shutdown();
+    }
+  }
+
+  /**
+   * Test of HatFilterEngine.filter(List).
+   *
+   * <p>Pre: Calling thread interrupted, large outline processed in parallel
+   *
+   * <p>Post: Filtering cancelled, interrupted status kept, threads of pool stop
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testFilter_interruptedParallel() throws Exception {
+    List<Point2d> large = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      large.addAll(noisyOutline());
+    }
+    ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      HatFilterEngine engine = HatFilterEngine.builder().window(51).forkJoinPool(pool)
+              .parallelThreshold(0).build();
+      Thread.currentThread().interrupt();
+      try {
+        engine.filter(large);
+        fail("Exception not thrown");
+      } catch (CancellationException e) {
+        assertTrue(Thread.interrupted());
+      }
+      assertTrue(pool.awaitQuiescence(5, TimeUnit.SECONDS));
+    } finally {
+      Thread.interrupted();
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Weighting computed as in HatSnakeFilter_ before, with BasicPolygons.
+   */
+  private double getReference(final List<Point2d> p, int n) {
+    double[] len = new double[p.size()];
+    BasicPolygons bp = new BasicPolygons();
+    Vector2d middle;
+    try { // check if input polygon is correct
+      middle = new Vector2d(bp.polygonCenterOfMass(p));
+    } catch (IllegalArgumentException e) { // if not get middle point as mean
+      double mx = 0;
+      double my = 0;
+      for (Point2d v : p) {
+        mx += v.x;
+        my += v.y;
+      }
+      middle = new Vector2d(mx / p.size(), my / p.size());
+    }
+    int i = 0;
+    // get lengths
+    for (Point2d v : p) {
+      Vector2d vec = new Vector2d(middle); // vector between px and middle
+      vec.sub(v);
+      len[i++] = vec.length();
+    }
+    // get mean
+    double mean = 0;
+    for (double d : len) {
+      mean += d;
+    }
+    mean /= p.size();
+    // get std
+    double std = 0;
+    for (double d : len) {
+      std += Math.pow(d - mean, 2.0);
+    }
+    std /= n;
+    return Math.sqrt(std);
+  }
+
+  /**
+   * Test of HatFilterEngine.getWeighting(double[], double[], int, int, int, boolean).
+   *
+   * <p>Pre: Real outline and noisy outline with negative coordinates and self-crossing windows.
+   * Windows wrapped around end of outline
+   *
+   * <p>Post: The same weights as computed with BasicPolygons when windows with crossing edges are
+   * marked as defective. Mean point used for defective window and window marked as defective
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testGetWeighting() throws Exception {
+    List<Point2d> prot = new DataLoader(
+            loadResource(getClass().getClassLoader(), "testData_prot.dat").toString())
+                    .getListofPoints();
+    int crossing = 0;
+    for (List<Point2d> p : Arrays.asList(prot, noisyOutline())) {
+      Outline outline = new Outline(p);
+      int n = p.size();
+      for (int window : new int[] { 3, 9, 23 }) {
+        WindowIntersections wi = new WindowIntersections(outline, window);
+        for (int r = 0; r < n; r++) {
+          List<Point2d> win = new CircularSubList<>(p, r, window);
+          boolean defective = wi.isCrossing(r);
+          crossing += defective ? 1 : 0;
+          double ref = getReference(win, n);
+          assertEquals("window=" + window + " r=" + r, ref,
+                  HatFilterEngine.getWeighting(outline.x, outline.y, r, window, n, defective), 0);
+          assertEquals(ref, HatFilterEngine.getWeighting(win, n), 0);
+        }
+      }
+    }
+    assertTrue(crossing > 0);
+    double[] x = { 2, 5, 0, 1 };
+    double[] y = { 0, 5, 0, 0 };
+    assertEquals(Math.sqrt(2.0 / 9), HatFilterEngine.getWeighting(x, y, 2, 3, 3, false), 1e-12);
+    // triangle with additional vertex on edge, mean point (1.5,2.25) used when marked as defective
+    double[] tx = { 0, 6, 0, 0 };
+    double[] ty = { 0, 0, 6, 3 };
+    double[] len = new double[4];
+    double mean = 0;
+    for (int i = 0; i < 4; i++) {
+      len[i] = Math.hypot(tx[i] - 1.5, ty[i] - 2.25);
+      mean += len[i] / 4;
+    }
+    double expected = 0;
+    for (double l : len) {
+      expected += (l - mean) * (l - mean) / 4;
+    }
+    expected = Math.sqrt(expected);
+    assertEquals(expected, HatFilterEngine.getWeighting(tx, ty, 0, 4, 4, true), 1e-12);
+    assertTrue(Math.abs(expected - HatFilterEngine.getWeighting(tx, ty, 0, 4, 4, false)) > 1e-3);
+  }
+}
@@ -0,0 +1,107 @@
+package quimp.plugin;
+
+import static com.github.baniuk.ImageJTestSuite.dataaccess.ResourceLoader.loadResource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.vecmath.Point2d;
+
+import com.github.baniuk.ImageJTestSuite.dataaccess.DataLoader;
+import com.github.celldynamics.quimp.plugin.ParamList;
+
+/**
+ * Test class for HatFilterMetrics.
+ *
+ * @author p.baniukiewicz
+ *
+ */
+public class HatFilterMetricsTest {
+
+  private List<Point2d> prot;
+  private HatSnakeFilter_ hf;
+
+  /**
+   * Load outline and configure filter.
+   *
+   * @throws Exception Exception
+   */
+  @SuppressWarnings("serial")
+  @Before
+  public void setUp() throws Exception {
+    prot = new DataLoader(
+            loadResource(getClass().getClassLoader(), "testData_prot.dat").toString())
+                    .getListofPoints();
+    hf = new HatSnakeFilter_();
+    hf.setPluginConfig(new ParamList() {
+      {
+        put("window", "9");
+        put("pnum", "3");
+        put("alevmin", "0.0");
+        put("alevmax", "1.0");
+      }
+    });
+    hf.attachData(prot);
+  }
+
+  /**
+   * Test of HatSnakeFilter_.setMetrics(HatFilterMetrics).
+   *
+   * <p>Pre: Outline with protrusions filtered twice
+   *
+   * <p>Post: Counters consistent with output and summed over runs
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testMetrics() throws Exception {
+    HatFilterMetrics metrics = new HatFilterMetrics();
+    hf.setMetrics(metrics);
+    List<Point2d> out = hf.runPlugin();
+    assertEquals(1, metrics.getRuns());
+    assertEquals(prot.size(), metrics.getWindowsEvaluated());
+    assertEquals(3, metrics.getProtrusionsRemoved());
+    assertEquals(prot.size() - 3 * 9, out.size());
+    assertTrue(metrics.getConvexityTests() >= 2); // first candidate is not tested
+    assertEquals(0, metrics.getRejectedByLevel());
+    assertTrue(metrics.getStep1Time() > 0);
+    long overlap = metrics.getRejectedByOverlap();
+    hf.runPlugin();
+    assertEquals(2, metrics.getRuns());
+    assertEquals(2 * prot.size(), metrics.getWindowsEvaluated());
+    assertEquals(2 * overlap, metrics.getRejectedByOverlap());
+  }
+
+  /**
+   * Test of HatFilterMetrics.add(HatFilterMetrics) and HatFilterMetrics.reset().
+   *
+   * <p>Pre: Metrics of two filters
+   *
+   * <p>Post: Metrics summed, cleared after reset
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testAdd() throws Exception {
+    HatFilterMetrics m1 = new HatFilterMetrics();
+    HatFilterMetrics m2 = new HatFilterMetrics();
+    hf.setMetrics(m1);
+    hf.runPlugin();
+    hf.setMetrics(m2);
+    hf.runPlugin();
+    hf.runPlugin();
+    m1.add(m2);
+    assertEquals(3, m1.getRuns());
+    assertEquals(9, m1.getProtrusionsRemoved());
+    assertEquals(3 * m2.getConvexityTests() / 2, m1.getConvexityTests());
+    m1.reset();
+    assertEquals(0, m1.getRuns());
+    assertEquals(0, m1.getStep2Time());
+    hf.setMetrics(null);
+    hf.runPlugin();
+    assertEquals(2, m2.getRuns());
+  }
+}
@@ -0,0 +1,163 @@
+package quimp.plugin;
+
+import static com.github.baniuk.ImageJTestSuite.dataaccess.ResourceLoader.loadResource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.vecmath.Point2d;
+
+import com.github.baniuk.ImageJTestSuite.dataaccess.DataLoader;
+import com.github.celldynamics.quimp.plugin.ParamList;
+
+/**
+ * Test class for HatFilterResultCache.
+ *
+ * @author p.baniukiewicz
+ *
+ */
+public class HatFilterResultCacheTest {
+
+  private List<Point2d> prot;
+  private ParamList config;
+  private HatFilterEngine engine;
+
+  /**
+   * Load outline.
+   *
+   * @throws Exception Exception
+   */
+  @SuppressWarnings("serial")
+  @Before
+  public void setUp() throws Exception {
+    prot = new DataLoader(
+            loadResource(getClass().getClassLoader(), "testData_prot.dat").toString())
+                    .getListofPoints();
+    config = new ParamList() {
+      {
+        put("window", "9");
+        put("pnum", "3");
+        put("alevmin", "0.0");
+        put("alevmax", "1.0");
+      }
+    };
+    engine = HatFilterEngine.builder().window(9).pnum(3).build();
+  }
+
+  /**
+   * Test of HatSnakeFilter_.setResultCache(HatFilterResultCache).
+   *
+   * <p>Pre: Copy of the same outline filtered twice, then with other parameters
+   *
+   * <p>Post: Second run taken from cache, the same result, copy returned
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testRunPlugin() throws Exception {
+    HatFilterResultCache cache = new HatFilterResultCache();
+    HatFilterMetrics metrics = new HatFilterMetrics();
+    HatSnakeFilter_ hf = new HatSnakeFilter_();
+    hf.setPluginConfig(config);
+    hf.setResultCache(cache);
+    hf.setMetrics(metrics);
+    hf.attachData(prot);
+    List<Point2d> out1 = hf.runPlugin();
+    hf.attachData(new ArrayList<>(prot));
+    List<Point2d> out2 = hf.runPlugin();
+    assertEquals(out1, out2);
+    assertNotSame(out1.get(0), out2.get(0));
+    assertEquals(1, metrics.getRuns());
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    config.put("pnum", "2");
+    hf.setPluginConfig(config);
+    hf.runPlugin();
+    assertEquals(2, metrics.getRuns());
+    assertEquals(2, cache.size());
+  }
+
+  /**
+   * Test of HatFilterResultCache.get(List, HatFilterEngine).
+   *
+   * <p>Pre: Result stored for engine, engines with other settings
+   *
+   * <p>Post: Result found only for engines with the same parameters affecting result
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testGet_key() throws Exception {
+    HatFilterResultCache cache = new HatFilterResultCache();
+    cache.put(prot, engine, prot);
+    assertNotNull(cache.get(prot, HatFilterEngine.fromConfig(config)));
+    assertNotNull(cache.get(prot, engine.toBuilder().lazyConvexity(false).forkJoinPool(null)
+            .metrics(new HatFilterMetrics()).build()));
+    assertNull(cache.get(prot, engine.toBuilder().window(11).build()));
+    assertNull(cache.get(prot, engine.toBuilder().pnum(2).build()));
+    assertNull(cache.get(prot, engine.toBuilder().alevmin(0.1).build()));
+    assertNull(cache.get(prot, engine.toBuilder().alevmax(0.9).build()));
+    assertNull(cache.get(prot, engine.toBuilder().crossingDefective(false).build()));
+  }
+
+  /**
+   * Test of HatFilterResultCache.put(List, HatFilterEngine, List).
+   *
+   * <p>Pre: More entries than limit, one entry used recently
+   *
+   * <p>Post: Least recently used entries evicted
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testPut_entries() throws Exception {
+    HatFilterResultCache cache = new HatFilterResultCache(2, Long.MAX_VALUE);
+    List<List<Point2d>> outlines = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      outlines.add(new ArrayList<>(prot.subList(i, prot.size())));
+    }
+    cache.put(outlines.get(0), engine, prot);
+    cache.put(outlines.get(1), engine, prot);
+    assertNotNull(cache.get(outlines.get(0), engine));
+    cache.put(outlines.get(2), engine, prot);
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getEvictions());
+    assertNotNull(cache.get(outlines.get(0), engine));
+    assertNull(cache.get(outlines.get(1), engine));
+    assertNotNull(cache.get(outlines.get(2), engine));
+  }
+
+  /**
+   * Test of HatFilterResultCache.put(List, HatFilterEngine, List).
+   *
+   * <p>Pre: Entries exceeding memory limit, entry larger than limit
+   *
+   * <p>Post: Oldest entries evicted, size within limit, too large entry not stored
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testPut_bytes() throws Exception {
+    List<Point2d> small = prot.subList(0, 10);
+    long entry = HatFilterResultCache.ENTRY_OVERHEAD + 16L * 20;
+    HatFilterResultCache cache = new HatFilterResultCache(100, 2 * entry);
+    for (int i = 0; i < 3; i++) {
+      cache.put(small, engine.toBuilder().pnum(i + 1).build(), small);
+    }
+    assertEquals(2, cache.size());
+    assertEquals(2 * entry, cache.getBytes());
+    assertEquals(1, cache.getEvictions());
+    cache.put(prot, engine, prot);
+    assertEquals(2, cache.size());
+    assertNull(cache.get(prot, engine));
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getBytes());
+  }
+}
@@ -0,0 +1,96 @@
+package quimp.plugin;
+
+import static com.github.baniuk.ImageJTestSuite.dataaccess.ResourceLoader.loadResource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.vecmath.Point2d;
+
+import com.github.baniuk.ImageJTestSuite.dataaccess.DataLoader;
+import com.github.celldynamics.quimp.plugin.ParamList;
+
+/**
+ * Test class for HatFilterStack.
+ *
+ * @author p.baniukiewicz
+ *
+ */
+public class HatFilterStackTest {
+
+  private List<List<List<Point2d>>> stack;
+  private ParamList config;
+
+  /**
+   * Build stack of real outlines.
+   *
+   * @throws Exception Exception
+   */
+  @SuppressWarnings("serial")
+  @Before
+  public void setUp() throws Exception {
+    List<List<Point2d>> outlines = new ArrayList<>();
+    for (String file : new String[] { "testData_137.dat", "testData_1.dat", "testData_125.dat",
+        "testData_75.dat", "testData_prot.dat" }) {
+      outlines.add(new DataLoader(loadResource(getClass().getClassLoader(), file).toString())
+              .getListofPoints());
+    }
+    stack = new ArrayList<>();
+    stack.add(outlines.subList(0, 2));
+    stack.add(Collections.emptyList());
+    stack.add(outlines.subList(2, 5));
+    stack.add(Arrays.asList(outlines.get(4), outlines.get(0)));
+    config = new ParamList() {
+      {
+        put("window", "23");
+        put("pnum", "2");
+        put("alevmin", "0.0");
+        put("alevmax", "1.0");
+      }
+    };
+  }
+
+  /**
+   * Test of HatFilterStack.filter(List, ProgressListener).
+   *
+   * <p>Pre: Stack with empty frame processed by 3 workers
+   *
+   * <p>Post: Results indexed as input, the same as from plugin. Progress reported for every
+   * outline.
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testFilter() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    AtomicInteger maxDone = new AtomicInteger();
+    List<List<HatFilterBatch.Result>> res;
+    try (HatFilterStack hs = new HatFilterStack(config, 3)) {
+      res = hs.filter(stack, (done, total) -> {
+        assertEquals(7, total);
+        calls.incrementAndGet();
+        maxDone.accumulateAndGet(done, Math::max);
+      });
+    }
+    assertEquals(7, calls.get());
+    assertEquals(7, maxDone.get());
+    assertEquals(stack.size(), res.size());
+    for (int f = 0; f < stack.size(); f++) {
+      assertEquals(stack.get(f).size(), res.get(f).size());
+      for (int c = 0; c < stack.get(f).size(); c++) {
+        assertTrue(res.get(f).get(c).isSuccess());
+        HatSnakeFilter_ hf = new HatSnakeFilter_();
+        hf.attachData(stack.get(f).get(c));
+        hf.setPluginConfig(config);
+        assertEquals(hf.runPlugin(), res.get(f).get(c).getOutline());
+      }
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package quimp.plugin;
+
+import static com.github.baniuk.ImageJTestSuite.dataaccess.ResourceLoader.loadResource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.vecmath.Point2d;
+
+import com.github.baniuk.ImageJTestSuite.dataaccess.DataLoader;
+import com.github.celldynamics.quimp.plugin.ParamList;
+
+/**
+ * Test class for HatFilterStream.
+ *
+ * @author p.baniukiewicz
+ *
+ */
+public class HatFilterStreamTest {
+
+  private List<Point2d> prot;
+  private ParamList config;
+
+  /**
+   * Load outline.
+   *
+   * @throws Exception Exception
+   */
+  @SuppressWarnings("serial")
+  @Before
+  public void setUp() throws Exception {
+    prot = new DataLoader(
+            loadResource(getClass().getClassLoader(), "testData_prot.dat").toString())
+                    .getListofPoints();
+    config = new ParamList() {
+      {
+        put("window", "9");
+        put("pnum", "3");
+        put("alevmin", "0.0");
+        put("alevmax", "1.0");
+      }
+    };
+  }
+
+  /**
+   * Outline with one vertex moved, like next frame of the same cell.
+   */
+  private List<Point2d> frame(int f) {
+    List<Point2d> ret = new ArrayList<>();
+    for (Point2d p : prot) {
+      ret.add(new Point2d(p));
+    }
+    if (f > 0) {
+      ret.get((7 * f) % ret.size()).x += 0.5;
+    }
+    return ret;
+  }
+
+  /**
+   * Test of HatFilterStream.filter(Stream).
+   *
+   * <p>Pre: Infinite stream of outlines
+   *
+   * <p>Post: Outlines filtered only when results are consumed
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testFilter_lazy() throws Exception {
+    AtomicInteger read = new AtomicInteger();
+    Stream<List<Point2d>> frames = Stream.iterate(0, i -> i + 1).peek(i -> read.incrementAndGet())
+            .map(this::frame);
+    Iterator<HatFilterBatch.Result> it = new HatFilterStream(config).filter(frames).iterator();
+    assertEquals(0, read.get());
+    HatFilterBatch.Result r = it.next();
+    assertTrue(r.isSuccess());
+    assertEquals(new HatFilterEngine(9, 3, 0, 1).filter(prot), r.getOutline());
+    assertTrue(read.get() <= 2);
+  }
+
+  /**
+   * Test of HatFilterStream.filter(Stream).
+   *
+   * <p>Pre: Sequential stream of outlines of two cells interleaved frame by frame, warm start on
+   *
+   * <p>Post: The same results as for single outlines, windows of both cells reused
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testFilter_interleavedCells() throws Exception {
+    List<List<Point2d>> frames = new ArrayList<>();
+    for (int f = 0; f < 10; f++) {
+      frames.add(frame(f));
+      List<Point2d> other = frame(f);
+      for (Point2d p : other) {
+        p.x += 100; // other cell, all vertices differ
+      }
+      frames.add(other);
+    }
+    HatFilterEngine engine = new HatFilterEngine(9, 3, 0, 1);
+    HatFilterStream hfs = new HatFilterStream(config);
+    HatFilterMetrics metrics = new HatFilterMetrics();
+    hfs.setMetrics(metrics);
+    List<HatFilterBatch.Result> res = hfs.filter(frames.stream()).collect(Collectors.toList());
+    for (int i = 0; i < frames.size(); i++) {
+      assertEquals(engine.filter(frames.get(i)), res.get(i).getOutline());
+    }
+    assertTrue(metrics.getWindowsEvaluated() < 4L * prot.size());
+  }
+
+  /**
+   * Test of HatFilterStream.filter(Stream).
+   *
+   * <p>Pre: Parallel stream of similar outlines with one too short, warm start on and off
+   *
+   * <p>Post: Results in input order and the same as for single outlines. Windows reused with warm
+   * start.
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testFilter_parallel() throws Exception {
+    List<List<Point2d>> frames =
+            IntStream.range(0, 40).mapToObj(this::frame).collect(Collectors.toList());
+    frames.set(5, prot.subList(0, 5));
+    HatFilterEngine engine = new HatFilterEngine(9, 3, 0, 1);
+    HatFilterStream hfs = new HatFilterStream(config);
+    for (boolean warm : new boolean[] { false, true }) {
+      HatFilterMetrics metrics = new HatFilterMetrics();
+      hfs.setMetrics(metrics);
+      hfs.setWarmStart(warm);
+      List<HatFilterBatch.Result> res =
+              hfs.filter(frames.parallelStream()).collect(Collectors.toList());
+      assertEquals(frames.size(), res.size());
+      for (int i = 0; i < frames.size(); i++) {
+        if (i == 5) {
+          assertFalse(res.get(i).isSuccess());
+          continue;
+        }
+        assertEquals(engine.filter(frames.get(i)), res.get(i).getOutline());
+      }
+      long all = (frames.size() - 1) * (long) prot.size();
+      if (warm) {
+        assertTrue(metrics.getWindowsEvaluated() < all);
+      } else {
+        assertEquals(all, metrics.getWindowsEvaluated());
+      }
+    }
+  }
+}
@@ -5,15 +5,16 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.awt.event.ActionEvent;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.swing.JButton;
 
@@ -176,6 +177,182 @@ public class HatFilterTest {
     hf.runPlugin();
   }
 
+  /**
+   * Test of HatSnakeFilter_.runPlugin().
+   * 
+   * <p>Pre: Unmodifiable list of points with protrusions
+   * 
+   * <p>Post: Input data are not modified by filter
+   * 
+   * @throws QuimpPluginException QuimpPluginException
+   */
+  @SuppressWarnings("serial")
+  @Test
+  public void test_HatFilter_inputNotModified() throws QuimpPluginException {
+    List<Point2d> copy = new ArrayList<>(prot);
+    HatSnakeFilter_ hf = new HatSnakeFilter_();
+    hf.attachData(Collections.unmodifiableList(prot));
+    hf.setPluginConfig(new ParamList() {
+      {
+        put("window", "9");
+        put("pnum", "3");
+        put("alevmin", "0.0");
+        put("alevmax", "1.0");
+      }
+    });
+    hf.runPlugin();
+    assertEquals(copy, prot);
+  }
+
+  /**
+   * Test of HatSnakeFilter_.setLazyConvexity(boolean).
+   * 
+   * <p>Pre: Simulated protrusions
+   * 
+   * <p>Post: The same output for lazy and eager convexity evaluation
+   * 
+   * @throws QuimpPluginException QuimpPluginException
+   */
+  @SuppressWarnings("serial")
+  @Test
+  public void test_HatFilter_lazyConvexity() throws QuimpPluginException {
+    ParamList config = new ParamList() {
+      {
+        put("window", "9");
+        put("pnum", "6");
+        put("alevmin", "0.0");
+        put("alevmax", "1.0");
+      }
+    };
+    HatSnakeFilter_ hf = new HatSnakeFilter_();
+    hf.attachData(prot);
+    hf.setPluginConfig(config);
+    assertTrue(hf.isLazyConvexity());
+    List<Point2d> lazy = hf.runPlugin();
+    hf.setLazyConvexity(false);
+    List<Point2d> eager = hf.runPlugin();
+    assertEquals(eager, lazy);
+  }
+
+  /**
+   * Test of HatSnakeFilter_.setForkJoinPool(ForkJoinPool).
+   * 
+   * <p>Pre: Simulated protrusions processed serially and in parallel
+   * 
+   * <p>Post: The same output regardless of number of threads
+   * 
+   * @throws QuimpPluginException QuimpPluginException
+   */
+  @SuppressWarnings("serial")
+  @Test
+  public void test_HatFilter_parallel() throws QuimpPluginException {
+    ParamList config = new ParamList() {
+      {
+        put("window", "9");
+        put("pnum", "6");
+        put("alevmin", "0.0");
+        put("alevmax", "1.0");
+      }
+    };
+    HatSnakeFilter_ hf = new HatSnakeFilter_();
+    hf.attachData(prot);
+    hf.setPluginConfig(config);
+    hf.setLazyConvexity(false);
+    hf.setForkJoinPool(null);
+    List<Point2d> serial = hf.runPlugin();
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      hf.setForkJoinPool(pool);
+      hf.setParallelThreshold(0);
+      assertEquals(serial, hf.runPlugin());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Test of HatSnakeFilter_.setWarmStart(boolean).
+   * 
+   * <p>Pre: Consecutive outlines with few vertices moved, filtered by one instance of plugin
+   * 
+   * <p>Post: The same output as without warm start
+   * 
+   * @throws QuimpPluginException QuimpPluginException
+   */
+  @SuppressWarnings("serial")
+  @Test
+  public void test_HatFilter_warmStart() throws QuimpPluginException {
+    ParamList config = new ParamList() {
+      {
+        put("window", "9");
+        put("pnum", "3");
+        put("alevmin", "0.0");
+        put("alevmax", "1.0");
+      }
+    };
+    HatSnakeFilter_ warm = new HatSnakeFilter_();
+    warm.setPluginConfig(config);
+    warm.setWarmStart(true);
+    HatSnakeFilter_ cold = new HatSnakeFilter_();
+    cold.setPluginConfig(config);
+    List<Point2d> frame = new ArrayList<>(prot);
+    for (int f = 0; f < 10; f++) {
+      int v = (f * 37) % frame.size();
+      frame.set(v, new Point2d(frame.get(v).x + 0.5, frame.get(v).y - 0.5));
+      warm.attachData(frame);
+      cold.attachData(frame);
+      assertEquals(cold.runPlugin(), warm.runPlugin());
+    }
+  }
+
+  /**
+   * Test of HatSnakeFilter_.setWarmStart(boolean).
+   * 
+   * <p>Pre: Consecutive outlines of two cells with few vertices moved, cells filtered alternately
+   * by one instance of plugin as in BOA
+   * 
+   * <p>Post: The same output as without warm start, weightings of both cells reused
+   * 
+   * @throws QuimpPluginException QuimpPluginException
+   */
+  @SuppressWarnings("serial")
+  @Test
+  public void test_HatFilter_warmStart_interleaved() throws QuimpPluginException {
+    ParamList config = new ParamList() {
+      {
+        put("window", "9");
+        put("pnum", "3");
+        put("alevmin", "0.0");
+        put("alevmax", "1.0");
+      }
+    };
+    HatSnakeFilter_ warm = new HatSnakeFilter_();
+    warm.setPluginConfig(config);
+    warm.setWarmStart(true);
+    HatFilterMetrics warmMetrics = new HatFilterMetrics();
+    warm.setMetrics(warmMetrics);
+    HatSnakeFilter_ cold = new HatSnakeFilter_();
+    cold.setPluginConfig(config);
+    HatFilterMetrics coldMetrics = new HatFilterMetrics();
+    cold.setMetrics(coldMetrics);
+    List<Point2d> cell1 = new ArrayList<>(prot);
+    List<Point2d> cell2 = new ArrayList<>();
+    for (Point2d p : prot) { // other cell of the same size
+      cell2.add(new Point2d(p.y + 100, p.x - 50));
+    }
+    for (int f = 0; f < 10; f++) {
+      for (List<Point2d> frame : Arrays.asList(cell1, cell2)) {
+        int v = (f * 37) % frame.size();
+        frame.set(v, new Point2d(frame.get(v).x + 0.5, frame.get(v).y - 0.5));
+        warm.attachData(frame);
+        cold.attachData(frame);
+        assertEquals(cold.runPlugin(), warm.runPlugin());
+      }
+    }
+    // only the first outline of every cell is computed from scratch
+    assertTrue(warmMetrics.getWindowsEvaluated() < coldMetrics.getWindowsEvaluated() / 4);
+  }
+
   /**
    * test set and get parameters to/from filter.
    * 
@@ -338,63 +515,6 @@ public class HatFilterTest {
     }
   }
 
-  /**
-   * Test of WindowIndRange class.
-   * 
-   * <p>Pre: Separated ranges of indexes
-   * 
-   * <p>Post: All ranges are added to list
-   */
-  @Test
-  public void testWindowIndRange_1() {
-    TreeSet<WindowIndRange> p = new TreeSet<>();
-    assertTrue(p.add(new WindowIndRange(1, 5)));
-    assertTrue(p.add(new WindowIndRange(6, 10)));
-    assertTrue(p.add(new WindowIndRange(-5, 0)));
-    LOGGER.debug(p.toString());
-  }
-
-  /**
-   * Test of WindowIndRange class.
-   * 
-   * <p>Pre: Overlap ranges of indexes
-   * 
-   * <p>Post: Overlap ranges are not added to list
-   */
-  @Test
-  public void testWindowIndRange_2() {
-    TreeSet<WindowIndRange> p = new TreeSet<>();
-    assertTrue(p.add(new WindowIndRange(1, 5)));
-    assertTrue(p.add(new WindowIndRange(7, 10)));
-    assertTrue(p.add(new WindowIndRange(-5, 0)));
-
-    assertFalse(p.add(new WindowIndRange(7, 8)));
-    assertFalse(p.add(new WindowIndRange(10, 12)));
-    assertFalse(p.add(new WindowIndRange(9, 12)));
-    assertFalse(p.add(new WindowIndRange(4, 7)));
-    assertFalse(p.add(new WindowIndRange(4, 6)));
-    assertFalse(p.add(new WindowIndRange(-5, 0)));
-    LOGGER.debug(p.toString());
-  }
-
-  /**
-   * Test of WindowIndRange class Test if particular point is included in any range stored in
-   * TreeSet.
-   */
-  @Test
-  public void testWindowIndRange_3() {
-    TreeSet<WindowIndRange> p = new TreeSet<>();
-    assertTrue(p.add(new WindowIndRange(1, 5)));
-    assertTrue(p.add(new WindowIndRange(6, 10)));
-    assertTrue(p.add(new WindowIndRange(-5, 0)));
-
-    assertTrue(p.contains(new WindowIndRange(2, 2)));
-    assertTrue(p.contains(new WindowIndRange(6, 6)));
-    assertFalse(p.contains(new WindowIndRange(11, 11)));
-
-    LOGGER.debug(p.toString());
-  }
-
   /**
    * Test view updater.
    * 
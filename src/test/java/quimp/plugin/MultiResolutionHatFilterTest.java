@@ -0,0 +1,274 @@
+package quimp.plugin;
+
+import static com.github.baniuk.ImageJTestSuite.dataaccess.ResourceLoader.loadResource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.vecmath.Point2d;
+
+import com.github.baniuk.ImageJTestSuite.dataaccess.DataLoader;
+import com.github.celldynamics.quimp.plugin.QuimpPluginException;
+
+/**
+ * Test class for MultiResolutionHatFilter.
+ *
+ * @author p.baniukiewicz
+ *
+ */
+public class MultiResolutionHatFilterTest {
+
+  private List<Point2d> prot;
+  private List<Point2d> dense;
+
+  /**
+   * Load test outline and make dense outline by inserting 3 points on every edge.
+   *
+   * @throws Exception Exception
+   */
+  @Before
+  public void setUp() throws Exception {
+    prot = new DataLoader(loadResource(getClass().getClassLoader(), "testData_prot.dat")
+            .toString()).getListofPoints();
+    dense = new ArrayList<>();
+    for (int i = 0; i < prot.size(); i++) {
+      Point2d a = prot.get(i);
+      Point2d b = prot.get((i + 1) % prot.size());
+      for (int k = 0; k < 4; k++) {
+        dense.add(new Point2d(a.x + (b.x - a.x) * k / 4, a.y + (b.y - a.y) * k / 4));
+      }
+    }
+  }
+
+  /**
+   * Test of MultiResolutionHatFilter.filter(List).
+   *
+   * <p>Pre: Dense outline, 4 candidates
+   *
+   * <p>Post: The same result as exact mode, only part of windows evaluated
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testFilter() throws Exception {
+    for (int pnum = 1; pnum <= 3; pnum++) {
+      HatFilterEngine engine = HatFilterEngine.builder().window(37).pnum(pnum).build();
+      MultiResolutionHatFilter mrf = new MultiResolutionHatFilter(engine, 4);
+      mrf.setCandidates(4);
+      BitSet positions = mrf.refine(new Outline(dense));
+      assertTrue(positions.cardinality() < dense.size() / 2);
+      assertEquals("pnum=" + pnum, engine.filter(dense), mrf.filter(dense));
+    }
+  }
+
+  /**
+   * Test of MultiResolutionHatFilter.filter(List).
+   *
+   * <p>Pre: Step 1, outline too short for resampling and all coarse windows refined
+   *
+   * <p>Post: All windows evaluated, the same result as exact mode
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testFilter_exact() throws Exception {
+    HatFilterEngine engine = HatFilterEngine.builder().window(9).pnum(3).build();
+    assertEquals(engine.filter(prot), new MultiResolutionHatFilter(engine, 1).filter(prot));
+    HatFilterEngine large = HatFilterEngine.builder().window(37).pnum(3).build();
+    assertEquals(null, new MultiResolutionHatFilter(large, 40).refine(new Outline(prot)));
+    MultiResolutionHatFilter mrf = new MultiResolutionHatFilter(large, 4);
+    mrf.setCandidates(dense.size());
+    assertEquals(null, mrf.refine(new Outline(dense)));
+    assertEquals(large.filter(dense), mrf.filter(dense));
+  }
+
+  /**
+   * Noisy outline with protrusions and vertices spaced by about 1 pixel, as in benchmarks.
+   */
+  private List<Point2d> noisy(int n) {
+    Random rnd = new Random(n);
+    double radius = n / (2 * Math.PI);
+    int nprot = Math.max(1, n / 100);
+    List<Point2d> p = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      double a = 2 * Math.PI * i / n;
+      double r = radius + 0.3 * rnd.nextGaussian();
+      double d = (double) i * nprot / n;
+      d -= Math.floor(d);
+      if (d > 0.45 && d < 0.55) {
+        r += 10 * Math.sin((d - 0.45) * 10 * Math.PI);
+      }
+      p.add(new Point2d(r * Math.cos(a), r * Math.sin(a)));
+    }
+    return p;
+  }
+
+  /**
+   * Indexes of vertices of outline not present in filtered outline.
+   */
+  private BitSet removed(List<Point2d> in, List<Point2d> out) {
+    BitSet ret = new BitSet(in.size());
+    int j = 0;
+    for (int i = 0; i < in.size(); i++) {
+      if (j < out.size() && in.get(i).equals(out.get(j))) {
+        j++;
+      } else {
+        ret.set(i);
+      }
+    }
+    assertEquals(out.size(), j); // output is subsequence of input
+    return ret;
+  }
+
+  /**
+   * Test of MultiResolutionHatFilter.filter(List).
+   *
+   * <p>Pre: Dense noisy outline, few and many candidates
+   *
+   * <p>Post: Only windows of original outline removed, more windows evaluated and more vertices
+   * removed by exact mode found for more candidates, within error given in class description
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testFilter_noisy() throws Exception {
+    List<Point2d> p = noisy(2000);
+    int[] candidates = { 1, 4, 16 };
+    double[] recall = { 0.5, 0.9, 1.0 }; // minimal fraction of vertices removed by exact mode
+    int last = 0;
+    for (int c = 0; c < candidates.length; c++) {
+      long common = 0;
+      long total = 0;
+      int evaluated = 0;
+      for (int pnum = 1; pnum <= 6; pnum++) {
+        HatFilterEngine engine = HatFilterEngine.builder().window(41).pnum(pnum).build();
+        MultiResolutionHatFilter mrf = new MultiResolutionHatFilter(engine, 8);
+        mrf.setCandidates(candidates[c]);
+        evaluated += mrf.refine(new Outline(p)).cardinality();
+        List<Point2d> res = mrf.filter(p);
+        assertEquals(p.size() - 41 * pnum, res.size());
+        BitSet exact = removed(p, engine.filter(p));
+        BitSet found = removed(p, res);
+        total += exact.cardinality();
+        found.and(exact);
+        common += found.cardinality();
+      }
+      assertTrue(evaluated > last);
+      assertTrue("candidates=" + candidates[c], common >= recall[c] * total);
+      last = evaluated;
+    }
+  }
+
+  /**
+   * Test of MultiResolutionHatFilter.filter(List).
+   *
+   * <p>Pre: Dense noisy outline, acceptance levels other than 0 and 1, one candidate
+   *
+   * <p>Post: All windows evaluated, the same result as exact mode
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testFilter_levels() throws Exception {
+    List<Point2d> p = noisy(2000);
+    for (double[] lev : new double[][] { { 0.5, 1 }, { 0, 0.8 } }) {
+      HatFilterEngine engine =
+              HatFilterEngine.builder().window(41).pnum(4).alevmin(lev[0]).alevmax(lev[1]).build();
+      MultiResolutionHatFilter mrf = new MultiResolutionHatFilter(engine, 8);
+      mrf.setCandidates(1);
+      assertEquals(null, mrf.refine(new Outline(p)));
+      assertEquals(engine.filter(p), mrf.filter(p));
+    }
+  }
+
+  /**
+   * Test of MultiResolutionHatFilter.filter(List) with metrics attached to engine.
+   *
+   * <p>Pre: Dense noisy outline filtered with default candidates, by exact mode and with
+   * acceptance levels other than 0 and 1
+   *
+   * <p>Post: Only run with part of windows evaluated counted as approximate
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testFilter_metrics() throws Exception {
+    List<Point2d> p = noisy(2000);
+    HatFilterMetrics metrics = new HatFilterMetrics();
+    HatFilterEngine engine =
+            HatFilterEngine.builder().window(41).pnum(2).metrics(metrics).build();
+    MultiResolutionHatFilter mrf = new MultiResolutionHatFilter(engine, 8);
+    assertEquals(MultiResolutionHatFilter.DEFAULT_CANDIDATES, mrf.getCandidates());
+    mrf.filter(p);
+    assertEquals(1, metrics.getRuns());
+    assertEquals(1, metrics.getApproximateRuns());
+    assertTrue(metrics.getWindowsEvaluated() < p.size());
+    engine.filter(p);
+    new MultiResolutionHatFilter(engine.toBuilder().alevmin(0.5).build(), 8).filter(p);
+    assertEquals(3, metrics.getRuns());
+    assertEquals(1, metrics.getApproximateRuns());
+    metrics.reset();
+    assertEquals(0, metrics.getApproximateRuns());
+  }
+
+  /**
+   * Test of MultiResolutionHatFilter.resample(Outline, int, int[]).
+   *
+   * <p>Pre: Square with side 4 resampled to 8 vertices
+   *
+   * <p>Post: Vertices at equal distances, indexes of nearest original vertices
+   */
+  @Test
+  public void testResample() {
+    Outline square = new Outline(new double[] { 0, 4, 4, 0 }, new double[] { 0, 0, 4, 4 });
+    int[] source = new int[8];
+    Outline res = MultiResolutionHatFilter.resample(square, 8, source);
+    double[] x = { 0, 2, 4, 4, 4, 2, 0, 0 };
+    double[] y = { 0, 0, 0, 2, 4, 4, 4, 2 };
+    int[] src = { 0, 1, 1, 2, 2, 3, 3, 0 };
+    for (int k = 0; k < 8; k++) {
+      assertEquals(x[k], res.x[k], 1e-12);
+      assertEquals(y[k], res.y[k], 1e-12);
+      assertEquals(src[k], source[k]);
+    }
+  }
+
+  /**
+   * Test of MultiResolutionHatFilter.
+   *
+   * <p>Pre: Wrong step, number of candidates and window
+   *
+   * <p>Post: Exceptions thrown
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testWrongParameters() throws Exception {
+    HatFilterEngine engine = HatFilterEngine.builder().window(9).build();
+    try {
+      new MultiResolutionHatFilter(engine, 0);
+      fail("Exception not thrown");
+    } catch (QuimpPluginException e) {
+      assertTrue(e != null);
+    }
+    try {
+      new MultiResolutionHatFilter(engine, 4).setCandidates(0);
+      fail("Exception not thrown");
+    } catch (QuimpPluginException e) {
+      assertTrue(e != null);
+    }
+    try {
+      new MultiResolutionHatFilter(engine.toBuilder().window(10).build(), 4).filter(dense);
+      fail("Exception not thrown");
+    } catch (QuimpPluginException e) {
+      assertTrue(e != null);
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package quimp.plugin;
+
+import static com.github.baniuk.ImageJTestSuite.dataaccess.ResourceLoader.loadResource;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.vecmath.Point2d;
+
+import com.github.baniuk.ImageJTestSuite.dataaccess.DataLoader;
+import com.github.celldynamics.quimp.plugin.QuimpPluginException;
+
+/**
+ * Test class for MultiScaleHatFilter.
+ *
+ * @author p.baniukiewicz
+ *
+ */
+public class MultiScaleHatFilterTest {
+
+  private List<List<Point2d>> outlines;
+
+  /**
+   * Load outlines.
+   *
+   * @throws Exception Exception
+   */
+  @Before
+  public void setUp() throws Exception {
+    outlines = new ArrayList<>();
+    for (String file : new String[] { "testData_137.dat", "testData_1.dat", "testData_125.dat",
+        "testData_75.dat", "testData_prot.dat" }) {
+      outlines.add(new DataLoader(loadResource(getClass().getClassLoader(), file).toString())
+              .getListofPoints());
+    }
+  }
+
+  /**
+   * Test of MultiScaleHatFilter.compute(List).
+   *
+   * <p>Pre: Real outlines, all odd window sizes from 3 to 51
+   *
+   * <p>Post: Selection for every single window size gives the same result as HatFilterEngine
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testCompute() throws Exception {
+    int[] windows = new int[25];
+    for (int i = 0; i < windows.length; i++) {
+      windows[i] = 3 + 2 * i;
+    }
+    MultiScaleHatFilter msf = new MultiScaleHatFilter(windows);
+    assertEquals(51, msf.getWindows()[0]);
+    for (List<Point2d> outline : outlines) {
+      MultiScaleHatFilter.RankTables tables = msf.compute(outline);
+      assertEquals(outline.size(), tables.size());
+      for (int window : new int[] { 3, 15, 23, 51 }) {
+        MultiScaleHatFilter.RankTables single =
+                new MultiScaleHatFilter(window).compute(outline);
+        assertArrayEquals(single.getRanks(window), tables.getRanks(window), 0.0);
+        for (int pnum = 1; pnum <= 3; pnum++) {
+          assertEquals("window=" + window + " pnum=" + pnum,
+                  new HatFilterEngine(window, pnum, 0.0, 1.0).filter(outline),
+                  single.select(pnum, 0.0, 1.0));
+        }
+      }
+    }
+  }
+
+  /**
+   * Test of MultiScaleHatFilter.filter(List, int, double, double).
+   *
+   * <p>Pre: Circle, windows of two sizes
+   *
+   * <p>Post: One window of every size removed
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testFilter() throws Exception {
+    List<Point2d> circle = new DataLoader(
+            loadResource(getClass().getClassLoader(), "testData_circle.dat").toString())
+                    .getListofPoints();
+    MultiScaleHatFilter msf = new MultiScaleHatFilter(5, 9, 5);
+    assertArrayEquals(new int[] { 9, 5 }, msf.getWindows());
+    assertEquals(circle.size() - 14, msf.filter(circle, 1, 0.0, 1.0).size());
+  }
+
+  /**
+   * Test of MultiScaleHatFilter.MultiScaleHatFilter(int...).
+   *
+   * <p>Pre: Even window
+   *
+   * <p>Post: Exception
+   *
+   * @throws Exception Exception
+   */
+  @Test(expected = QuimpPluginException.class)
+  public void testMultiScaleHatFilter_wrongWindow() throws Exception {
+    new MultiScaleHatFilter(3, 4);
+  }
+}
@@ -0,0 +1,178 @@
+package quimp.plugin;
+
+import static com.github.baniuk.ImageJTestSuite.dataaccess.ResourceLoader.loadResource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.scijava.vecmath.Point2d;
+
+import com.github.baniuk.ImageJTestSuite.dataaccess.DataLoader;
+
+/**
+ * Test class for OutlineArchive and OutlineArchiveWriter.
+ *
+ * @author p.baniukiewicz
+ *
+ */
+public class OutlineArchiveTest {
+
+  /**
+   * Temporary folder.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private List<List<Point2d>> outlines;
+
+  /**
+   * Load outlines.
+   *
+   * @throws Exception Exception
+   */
+  @Before
+  public void setUp() throws Exception {
+    outlines = new ArrayList<>();
+    for (String file : new String[] { "testData_137.dat", "testData_1.dat", "testData_prot.dat" }) {
+      outlines.add(new DataLoader(loadResource(getClass().getClassLoader(), file).toString())
+              .getListofPoints());
+    }
+    outlines.add(new ArrayList<>()); // empty outline
+  }
+
+  /**
+   * Test of OutlineArchive for double precision.
+   *
+   * <p>Pre: Outlines written to file
+   *
+   * <p>Post: The same outlines read, coordinates available as view of file, filter gives the same
+   * results as for lists
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testDouble() throws Exception {
+    Path file = folder.newFile().toPath();
+    try (OutlineArchiveWriter writer =
+            new OutlineArchiveWriter(file, outlines.size(), OutlineArchive.Precision.DOUBLE)) {
+      for (List<Point2d> o : outlines) {
+        writer.write(o);
+      }
+    }
+    try (OutlineArchive archive = new OutlineArchive(file)) {
+      assertEquals(outlines.size(), archive.size());
+      assertEquals(OutlineArchive.Precision.DOUBLE, archive.getPrecision());
+      for (int i = 0; i < outlines.size(); i++) {
+        assertEquals(outlines.get(i).size(), archive.getPoints(i));
+        assertEquals(outlines.get(i), archive.get(i));
+      }
+      DoubleBuffer b = archive.getCoordinates(2);
+      assertTrue(b.isReadOnly());
+      assertEquals(2 * outlines.get(2).size(), b.remaining());
+      assertEquals(outlines.get(2).get(1).getY(), b.get(outlines.get(2).size() + 1), 0.0);
+      HatFilterEngine engine = new HatFilterEngine(9, 3, 0, 1);
+      for (int i = 0; i < 3; i++) {
+        assertEquals(engine.filter(outlines.get(i)),
+                engine.filter(archive.getOutline(i)).toList());
+      }
+    }
+  }
+
+  /**
+   * Test of OutlineArchive for float precision.
+   *
+   * <p>Pre: Outlines written to file, fewer than declared
+   *
+   * <p>Post: Outlines read with float precision, only written outlines in file
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testFloat() throws Exception {
+    Path file = folder.newFile().toPath();
+    try (OutlineArchiveWriter writer =
+            new OutlineArchiveWriter(file, 5, OutlineArchive.Precision.FLOAT)) {
+      writer.write(outlines.get(0));
+      writer.write(outlines.get(1));
+    }
+    try (OutlineArchive archive = new OutlineArchive(file)) {
+      assertEquals(2, archive.size());
+      for (int i = 0; i < 2; i++) {
+        List<Point2d> read = archive.get(i);
+        assertEquals(outlines.get(i).size(), read.size());
+        for (int k = 0; k < read.size(); k++) {
+          assertEquals((float) outlines.get(i).get(k).getX(), read.get(k).getX(), 0.0);
+          assertEquals((float) outlines.get(i).get(k).getY(), read.get(k).getY(), 0.0);
+        }
+      }
+    }
+  }
+
+  /**
+   * Test of OutlineArchiveWriter.write(int, Outline).
+   *
+   * <p>Pre: Slots reserved for outlines, outlines written in reverse order, shorter than slots or
+   * not at all
+   *
+   * <p>Post: Outlines read at their indexes, not written ones are empty
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testWriteSlots() throws Exception {
+    Path file = folder.newFile().toPath();
+    int[] reserved = new int[outlines.size() + 1];
+    for (int i = 0; i < outlines.size(); i++) {
+      reserved[i] = outlines.get(i).size();
+    }
+    reserved[outlines.size()] = 10; // last slot not written
+    try (OutlineArchiveWriter writer =
+            new OutlineArchiveWriter(file, reserved, OutlineArchive.Precision.DOUBLE)) {
+      for (int i = outlines.size() - 1; i > 0; i--) {
+        writer.write(i, new Outline(outlines.get(i)));
+      }
+      writer.write(0, new Outline(outlines.get(0).subList(0, 5)));
+      try {
+        writer.write(3, new Outline(outlines.get(0))); // slot of empty outline
+        fail("Exception not thrown");
+      } catch (IOException e) {
+        assertTrue(e != null);
+      }
+    }
+    try (OutlineArchive archive = new OutlineArchive(file)) {
+      assertEquals(reserved.length, archive.size());
+      assertEquals(outlines.get(0).subList(0, 5), archive.get(0));
+      for (int i = 1; i < outlines.size(); i++) {
+        assertEquals(outlines.get(i), archive.get(i));
+      }
+      assertEquals(0, archive.getPoints(outlines.size()));
+    }
+  }
+
+  /**
+   * Test of OutlineArchive.OutlineArchive(Path).
+   *
+   * <p>Pre: Text file
+   *
+   * <p>Post: Exception
+   *
+   * @throws Exception Exception
+   */
+  @Test(expected = IOException.class)
+  public void testOutlineArchive_wrongFile() throws Exception {
+    Path file = folder.newFile().toPath();
+    Files.write(file, "1.0\n2.0\n3.0\n4.0\n5.0\n6.0\n".getBytes("UTF-8"));
+    new OutlineArchive(file).close();
+  }
+}
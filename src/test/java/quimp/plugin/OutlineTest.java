@@ -0,0 +1,75 @@
+package quimp.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Test;
+import org.scijava.vecmath.Point2d;
+
+/**
+ * Test class for Outline.
+ *
+ * @author p.baniukiewicz
+ *
+ */
+public class OutlineTest {
+
+  /**
+   * Test of Outline.toList(BitSet).
+   *
+   * <p>Pre: Runs of removed vertices at beginning, in middle and at end of outline
+   *
+   * <p>Post: Copies of not removed vertices in original order
+   */
+  @Test
+  public void testToListBitSet() {
+    List<Point2d> p = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      p.add(new Point2d(i, -i));
+    }
+    Outline o = new Outline(p);
+    BitSet removed = new BitSet();
+    removed.set(0, 2);
+    removed.set(4, 6);
+    removed.set(9);
+    removed.set(12); // beyond outline
+    List<Point2d> ret = o.toList(removed);
+    List<Point2d> expected = new ArrayList<>();
+    for (int i : new int[] { 2, 3, 6, 7, 8 }) {
+      expected.add(p.get(i));
+    }
+    assertEquals(expected, ret);
+    assertNotSame(p.get(2), ret.get(0));
+    assertEquals(p, o.toList(new BitSet()));
+    removed.set(0, 10);
+    assertEquals(0, o.toList(removed).size());
+  }
+
+  /**
+   * Test of Outline.remove(BitSet) and Outline.asList().
+   *
+   * <p>Pre: Runs of removed vertices at beginning, in middle and at end of outline
+   *
+   * <p>Post: The same vertices as returned by Outline.toList(BitSet)
+   */
+  @Test
+  public void testRemove() {
+    List<Point2d> p = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      p.add(new Point2d(i, -i));
+    }
+    Outline o = new Outline(p);
+    assertEquals(p, o.asList());
+    BitSet removed = new BitSet();
+    removed.set(0, 2);
+    removed.set(4, 6);
+    removed.set(9);
+    assertEquals(o.toList(removed), o.remove(removed).asList());
+    removed.set(0, 10);
+    assertEquals(0, o.remove(removed).size());
+  }
+}
@@ -0,0 +1,137 @@
+package quimp.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for PreviewExecutor.
+ *
+ * @author p.baniukiewicz
+ *
+ */
+public class PreviewExecutorTest {
+
+  private PreviewExecutor pe;
+
+  /**
+   * Create executor.
+   */
+  @Before
+  public void setUp() {
+    pe = new PreviewExecutor(100, 300);
+  }
+
+  /**
+   * Stop executor.
+   */
+  @After
+  public void tearDown() {
+    pe.shutdown();
+  }
+
+  /**
+   * Test of PreviewExecutor.submit(Callable, Consumer, Consumer).
+   *
+   * <p>Pre: Many requests submitted in short time
+   *
+   * <p>Post: Only the last one is computed and its result delivered on EDT
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testSubmit_coalesce() throws Exception {
+    AtomicInteger runs = new AtomicInteger();
+    List<Integer> results = new CopyOnWriteArrayList<>();
+    CountDownLatch done = new CountDownLatch(1);
+    for (int i = 0; i < 10; i++) {
+      int v = i;
+      pe.submit(() -> {
+        runs.incrementAndGet();
+        return v;
+      }, r -> {
+        assertTrue(SwingUtilities.isEventDispatchThread());
+        results.add(r);
+        done.countDown();
+      }, e -> done.countDown());
+    }
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    Thread.sleep(200);
+    assertEquals(1, runs.get());
+    assertEquals(1, results.size());
+    assertEquals(9, results.get(0).intValue());
+  }
+
+  /**
+   * Test of PreviewExecutor.submit(Callable, Consumer, Consumer).
+   *
+   * <p>Pre: Long request superseded while running, then request throwing exception
+   *
+   * <p>Post: Running request interrupted, only error of the last one delivered
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testSubmit_cancel() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(1);
+    List<Object> delivered = new CopyOnWriteArrayList<>();
+    pe.submit(() -> {
+      started.countDown();
+      try {
+        Thread.sleep(10000);
+      } catch (InterruptedException e) {
+        interrupted.countDown();
+      }
+      return 1;
+    }, r -> delivered.add(r), e -> delivered.add(e));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    pe.submit(() -> {
+      throw new IllegalStateException("test");
+    }, r -> delivered.add(r), e -> {
+      delivered.add(e);
+      done.countDown();
+    });
+    assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    Thread.sleep(200);
+    assertEquals(1, delivered.size());
+    assertTrue(delivered.get(0) instanceof IllegalStateException);
+  }
+
+  /**
+   * Test of PreviewExecutor idle timeout.
+   *
+   * <p>Pre: Request computed, executor not used for longer than idle timeout, then next request
+   *
+   * <p>Post: Background thread ended when idle, started again for next request
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testIdleTimeout() throws Exception {
+    for (int i = 0; i < 2; i++) {
+      CountDownLatch done = new CountDownLatch(1);
+      pe.submit(() -> 1, r -> done.countDown(), e -> done.countDown());
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+      assertEquals(1, pe.getThreadCount());
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (pe.getThreadCount() > 0 && System.nanoTime() < deadline) {
+        Thread.sleep(50);
+      }
+      assertEquals(0, pe.getThreadCount());
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package quimp.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test class for RankCacheSet.
+ *
+ * @author p.baniukiewicz
+ *
+ */
+public class RankCacheSetTest {
+
+  /**
+   * Circle of 40 vertices centred at given point.
+   */
+  private Outline cell(double cx, double cy) {
+    double[] x = new double[40];
+    double[] y = new double[40];
+    for (int i = 0; i < 40; i++) {
+      double a = 2 * Math.PI * i / 40;
+      x[i] = cx + 20 * Math.cos(a);
+      y[i] = cy + 20 * Math.sin(a);
+    }
+    return new Outline(x, y);
+  }
+
+  /**
+   * Remember outline in cache as engine does.
+   */
+  private void store(RankCache cache, Outline o) {
+    ConvexityTable convex = new ConvexityTable(new ConvexityIndex(o), 5);
+    cache.store(o, 5, true, new double[o.size()], convex);
+  }
+
+  /**
+   * Test of RankCacheSet.select(Outline, int, boolean).
+   *
+   * <p>Pre: Outlines of three cells filtered alternately, set limited to two cells
+   *
+   * <p>Post: Every cell gets its own cache, the least recently used cell forgotten
+   */
+  @Test
+  public void testSelect() {
+    RankCacheSet set = new RankCacheSet(2);
+    Outline a = cell(0, 0);
+    Outline b = cell(100, 0);
+    Outline c = cell(0, 100);
+    RankCache ca = set.select(a, 5, true);
+    store(ca, a);
+    RankCache cb = set.select(b, 5, true);
+    store(cb, b);
+    assertNotSame(ca, cb);
+    assertEquals(2, set.size());
+    List<Outline> frames = new ArrayList<>();
+    frames.add(a);
+    frames.add(b);
+    for (int f = 0; f < 3; f++) {
+      for (int k = 0; k < 2; k++) {
+        Outline o = frames.get(k);
+        double[] x = o.x.clone();
+        x[f] += 0.5;
+        Outline moved = new Outline(x, o.y.clone());
+        RankCache cache = set.select(moved, 5, true);
+        assertSame(k == 0 ? ca : cb, cache);
+        assertTrue(cache.isWeightValid(20));
+        store(cache, moved);
+        frames.set(k, moved);
+      }
+    }
+    // third cell replaces the first one, used less recently
+    RankCache cc = set.select(c, 5, true);
+    assertSame(ca, cc);
+    assertFalse(cc.isWeightValid(20));
+    store(cc, c);
+    assertSame(cb, set.select(frames.get(1), 5, true));
+    assertEquals(2, set.size());
+    // other window does not match any cell
+    assertFalse(set.select(c, 7, true).isWeightValid(20));
+  }
+}
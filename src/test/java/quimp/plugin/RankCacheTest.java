@@ -0,0 +1,148 @@
+package quimp.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.scijava.vecmath.Point2d;
+
+/**
+ * Test class for RankCache.
+ *
+ * @author p.baniukiewicz
+ *
+ */
+public class RankCacheTest {
+
+  /**
+   * Noisy outline on integer grid.
+   */
+  private List<Point2d> outline(Random rnd, int n) {
+    List<Point2d> p = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      double a = 2 * Math.PI * i / n;
+      double r = 20 + rnd.nextInt(10);
+      p.add(new Point2d(Math.round(r * Math.cos(a)), Math.round(r * Math.sin(a))));
+    }
+    return p;
+  }
+
+  /**
+   * Compute all data of outline and store them in cache.
+   */
+  private void store(RankCache cache, List<Point2d> p, int window) {
+    Outline o = new Outline(p);
+    int n = p.size();
+    double[] weights = new double[n];
+    for (int r = 0; r < n; r++) {
+      weights[r] = HatFilterEngine.getWeighting(new CircularSubList<>(p, r, window), n);
+    }
+    ConvexityTable convex = new ConvexityTable(new ConvexityIndex(o), window);
+    convex.computeAll();
+    cache.store(o, window, true, weights, convex);
+  }
+
+  /**
+   * Test of RankCache.prepare(Outline, int, boolean).
+   *
+   * <p>Pre: Sequence of noisy outlines with few vertices moved between frames
+   *
+   * <p>Post: Every weighting and convexity flag marked as reusable is the same as computed for
+   * current outline
+   */
+  @Test
+  public void testPrepare() {
+    Random rnd = new Random(0);
+    int reused = 0;
+    for (int t = 0; t < 20; t++) {
+      int n = 30 + rnd.nextInt(60);
+      int window = 3 + 2 * rnd.nextInt(5);
+      List<Point2d> p = outline(rnd, n);
+      RankCache cache = new RankCache(1.0);
+      store(cache, p, window);
+      for (int frame = 0; frame < 5; frame++) {
+        p = new ArrayList<>(p);
+        for (int k = 0; k < 1 + rnd.nextInt(3); k++) {
+          int v = rnd.nextInt(n);
+          p.set(v, new Point2d(p.get(v).x + rnd.nextInt(3) - 1, p.get(v).y + rnd.nextInt(3) - 1));
+        }
+        Outline o = new Outline(p);
+        assertTrue(cache.prepare(o, window, true));
+        ConvexityIndex ci = new ConvexityIndex(o);
+        for (int r = 0; r < n; r++) {
+          if (cache.isWeightValid(r)) {
+            assertEquals(HatFilterEngine.getWeighting(new CircularSubList<>(p, r, window), n),
+                    cache.getWeight(r), 0.0);
+            reused++;
+          }
+          if (cache.isConvexityValid(r)) {
+            assertEquals(ci.areAllPointsInside(r, window), cache.getConvexity().get(r));
+          }
+        }
+        store(cache, p, window);
+      }
+    }
+    assertTrue(reused > 0);
+  }
+
+  /**
+   * Test of RankCache.prepare(Outline, int, boolean).
+   *
+   * <p>Pre: Outline with all vertices moved, outline of other size, other window, other treatment
+   * of crossing windows
+   *
+   * <p>Post: Nothing is reused
+   */
+  @Test
+  public void testPrepare_rebuild() {
+    Random rnd = new Random(1);
+    List<Point2d> p = outline(rnd, 50);
+    RankCache cache = new RankCache();
+    assertFalse(cache.prepare(new Outline(p), 5, true));
+    store(cache, p, 5);
+    assertTrue(cache.prepare(new Outline(p), 5, true));
+    assertFalse(cache.prepare(new Outline(p), 7, true));
+    assertFalse(cache.prepare(new Outline(p), 5, false));
+    assertFalse(cache.prepare(new Outline(p.subList(0, 49)), 5, true));
+    List<Point2d> moved = new ArrayList<>();
+    for (Point2d v : p) {
+      moved.add(new Point2d(v.x + 1, v.y));
+    }
+    assertFalse(cache.prepare(new Outline(moved), 5, true));
+    assertFalse(cache.isWeightValid(0));
+    assertFalse(cache.isConvexityValid(0));
+  }
+
+  /**
+   * Test of RankCache.prepare(Outline, int, boolean).
+   *
+   * <p>Pre: The same outline object prepared many times, before and after storing data of outline
+   * equal to it
+   *
+   * <p>Post: Result kept until data are stored, then outline compared again
+   */
+  @Test
+  public void testPrepare_sameOutline() {
+    Random rnd = new Random(2);
+    List<Point2d> p = outline(rnd, 50);
+    List<Point2d> moved = new ArrayList<>();
+    for (Point2d v : p) {
+      moved.add(new Point2d(v.x + 1, v.y));
+    }
+    Outline o = new Outline(moved);
+    RankCache cache = new RankCache();
+    store(cache, p, 5);
+    assertFalse(cache.prepare(o, 5, true));
+    assertFalse(cache.prepare(o, 5, true));
+    store(cache, moved, 5);
+    assertTrue(cache.prepare(o, 5, true));
+    assertTrue(cache.prepare(o, 5, true));
+    assertTrue(cache.isWeightValid(0));
+    assertFalse(cache.prepare(o, 7, true));
+  }
+}
@@ -0,0 +1,89 @@
+package quimp.plugin;
+
+import static com.github.baniuk.ImageJTestSuite.dataaccess.ResourceLoader.loadResource;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.scijava.vecmath.Point2d;
+
+import com.github.baniuk.ImageJTestSuite.dataaccess.DataLoader;
+import com.github.celldynamics.quimp.geom.BasicPolygons;
+
+/**
+ * Test class for SlidingCircularity.
+ *
+ * @author p.baniukiewicz
+ *
+ */
+public class SlidingCircularityTest {
+
+  /**
+   * Compute circularities directly by rotating outline, as done in HatSnakeFilter_ before.
+   */
+  private double[] getReference(List<Point2d> p, int window) {
+    List<Point2d> points = new ArrayList<>(p);
+    BasicPolygons b = new BasicPolygons();
+    double[] ret = new double[points.size()];
+    for (int r = 0; r < points.size(); r++) {
+      List<Point2d> pointsnowindow = points.subList(window, points.size());
+      double area = b.getPolyArea(pointsnowindow);
+      double perim = b.getPolyPerim(pointsnowindow);
+      ret[r] = (4 * Math.PI * area) / (perim * perim);
+      Collections.rotate(points, -1);
+    }
+    return ret;
+  }
+
+  /**
+   * Test of SlidingCircularity.getCircularities(int).
+   *
+   * <p>Pre: Real outlines and various windows
+   *
+   * <p>Post: Circularities equal to those computed directly within tolerance
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testGetCircularities() throws Exception {
+    for (String file : new String[] { "testData_prot.dat", "testData_1.dat", "testData_75.dat" }) {
+      List<Point2d> p =
+              new DataLoader(loadResource(getClass().getClassLoader(), file).toString())
+                      .getListofPoints();
+      for (int window : new int[] { 3, 9, 23 }) {
+        double[] ref = getReference(p, window);
+        double[] circ = new SlidingCircularity(new Outline(p)).getCircularities(window);
+        for (int r = 0; r < ref.length; r++) {
+          assertEquals(ref[r], circ[r], ref[r] * SlidingCircularity.TOLERANCE);
+        }
+      }
+    }
+  }
+
+  /**
+   * Test of SlidingCircularity.getCircularities(int).
+   *
+   * <p>Pre: Window leaves only few points of outline
+   *
+   * <p>Post: Circularities equal to those computed directly
+   */
+  @Test
+  public void testGetCircularities_short() {
+    List<Point2d> p = new ArrayList<>();
+    p.add(new Point2d(0, 0));
+    p.add(new Point2d(10, 0));
+    p.add(new Point2d(10, 10));
+    p.add(new Point2d(5, 12));
+    p.add(new Point2d(0, 10));
+    for (int window = 1; window < p.size() - 1; window++) {
+      double[] ref = getReference(p, window);
+      double[] circ = new SlidingCircularity(new Outline(p)).getCircularities(window);
+      for (int r = 0; r < ref.length; r++) {
+        assertEquals(ref[r], circ[r], ref[r] * SlidingCircularity.TOLERANCE);
+      }
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package quimp.plugin;
+
+import static com.github.baniuk.ImageJTestSuite.dataaccess.ResourceLoader.loadResource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.scijava.vecmath.Point2d;
+
+import com.github.baniuk.ImageJTestSuite.dataaccess.DataLoader;
+
+/**
+ * Test class for WindowIntersections.
+ *
+ * @author p.baniukiewicz
+ *
+ */
+public class WindowIntersectionsTest {
+
+  /**
+   * Test all pairs of not adjacent edges of window polygon.
+   */
+  private boolean getReference(List<Point2d> p, int r, int window) {
+    List<Point2d> w = new CircularSubList<>(p, r, window);
+    for (int i = 0; i < window; i++) {
+      for (int j = i + 2; j < window; j++) {
+        if (i == 0 && j == window - 1) {
+          continue; // closing edge is adjacent to the first one
+        }
+        Point2d a = w.get(i);
+        Point2d b = w.get(i + 1);
+        Point2d c = w.get(j);
+        Point2d d = w.get((j + 1) % window);
+        if (Line2D.linesIntersect(a.x, a.y, b.x, b.y, c.x, c.y, d.x, d.y)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Test of WindowIntersections.isCrossing(int).
+   *
+   * <p>Pre: Real and noisy outlines, positions visited in order, with gaps and randomly
+   *
+   * <p>Post: The same results as test of all pairs of edges
+   *
+   * @throws Exception Exception
+   */
+  @Test
+  public void testIsCrossing() throws Exception {
+    List<List<Point2d>> outlines = new ArrayList<>();
+    for (String file : new String[] { "testData_prot.dat", "testData_1.dat", "testData_75.dat" }) {
+      outlines.add(new DataLoader(loadResource(getClass().getClassLoader(), file).toString())
+              .getListofPoints());
+    }
+    Random rnd = new Random(0);
+    List<Point2d> noisy = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      double a = 2 * Math.PI * i / 200;
+      double rad = 50 + rnd.nextInt(7);
+      noisy.add(new Point2d(Math.round(rad * Math.cos(a)), Math.round(rad * Math.sin(a))));
+    }
+    outlines.add(noisy);
+    int crossing = 0;
+    for (List<Point2d> p : outlines) {
+      int n = p.size();
+      for (int window : new int[] { 3, 5, 9, 23 }) {
+        WindowIntersections wi = new WindowIntersections(new Outline(p), window);
+        for (int r = 0; r < n; r++) {
+          boolean ref = getReference(p, r, window);
+          assertEquals("window=" + window + " r=" + r, ref, wi.isCrossing(r));
+          crossing += ref ? 1 : 0;
+        }
+        wi = new WindowIntersections(new Outline(p), window);
+        for (int r = 0; r < n; r += 3) {
+          assertEquals("window=" + window + " r=" + r, getReference(p, r, window),
+                  wi.isCrossing(r));
+        }
+        for (int k = 0; k < 50; k++) {
+          int r = rnd.nextInt(n);
+          assertEquals("window=" + window + " r=" + r, getReference(p, r, window),
+                  wi.isCrossing(r));
+        }
+      }
+    }
+    assertTrue(crossing > 0);
+  }
+
+  /**
+   * Test of WindowIntersections.isCrossing(int).
+   *
+   * <p>Pre: Outline with figure-eight window and window touching itself
+   *
+   * <p>Post: Crossing detected only for these windows, also when edges only touch
+   */
+  @Test
+  public void testIsCrossing_simple() {
+    List<Point2d> p = new ArrayList<>();
+    p.add(new Point2d(0, 0));
+    p.add(new Point2d(10, 10));
+    p.add(new Point2d(10, 0));
+    p.add(new Point2d(0, 10)); // edges 0 and 2 cross
+    p.add(new Point2d(-10, 20));
+    p.add(new Point2d(-20, 10));
+    p.add(new Point2d(-5, 15)); // touches edge 3 in its middle
+    p.add(new Point2d(-20, 0));
+    WindowIntersections wi = new WindowIntersections(new Outline(p), 4);
+    assertTrue(wi.isCrossing(0));
+    assertFalse(wi.isCrossing(1));
+    assertFalse(wi.isCrossing(2));
+    assertTrue(wi.isCrossing(3));
+  }
+}